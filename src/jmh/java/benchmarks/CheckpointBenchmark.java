@@ -0,0 +1,89 @@
+package benchmarks;
+
+import algorithms.CFRCheckpoint;
+import algorithms.CounterfactualRegretMinimizer;
+import algorithms.InfoSetTable;
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading a CFR checkpoint, which bounds how often training can
+ * save, and how long resuming takes. The tables are trained once, in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckpointBenchmark {
+
+    @Param({"2000"})
+    public int trainingIterations;
+
+    private CounterfactualRegretMinimizer<Card> trainer;
+    private Path saved, scratch;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        Hearts game = new Hearts();
+        game.setAllPlayerTypes(PlayerType.CFR_AI);
+        game.setTraining(true);
+        trainer = new CounterfactualRegretMinimizer<>(game, 2000);
+        trainer.setSampling(CounterfactualRegretMinimizer.Sampling.EXTERNAL);
+        trainer.trainBatch(trainingIterations);
+
+        saved = Files.createTempFile("hearts-benchmark", ".bin");
+        scratch = Files.createTempFile("hearts-benchmark", ".bin");
+        trainer.save(saved.toString());
+
+        // Measure only a checkpoint that holds the whole table, as resuming training needs
+        CFRCheckpoint checkpoint = CFRCheckpoint.open(saved);
+        for (int player = 0; player < checkpoint.numPlayers(); ++player) {
+            if (checkpoint.numInfoSets(player) != trainer.getRegrets().size(player)) {
+                throw new IllegalStateException("Checkpoint is missing info sets of player " + (player + 1));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(saved);
+        Files.deleteIfExists(scratch);
+    }
+
+    @Benchmark
+    public void save()
+    {
+        trainer.save(scratch.toString());
+    }
+
+    @Benchmark
+    public InfoSetTable load() throws IOException
+    {
+        CFRCheckpoint checkpoint = CFRCheckpoint.open(saved);
+        InfoSetTable strategies = new InfoSetTable(checkpoint.numPlayers());
+        InfoSetTable regrets = new InfoSetTable(checkpoint.numPlayers());
+        checkpoint.loadInto(strategies, regrets);
+        return strategies;
+    }
+
+    /**
+     * Opening alone, as a CFRPlayer does: the file is mapped, not copied
+     */
+    @Benchmark
+    public int open() throws IOException
+    {
+        return CFRCheckpoint.open(saved).numInfoSets(0);
+    }
+
+}
@@ -0,0 +1,99 @@
+package benchmarks;
+
+import algorithms.GameID;
+import game.Hearts;
+import game.State;
+import model.Card;
+import model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The game engine operations that every search and training iteration
+ * runs many times: copying a model, listing moves, building information
+ * set states, and ending a trick.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread) // Not game.State
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    private Model model;
+    private Hearts game;
+    private List<Card> moves;
+    private Model trickModel;
+    private int lastCard; // Card that completes the trick of trickModel
+    private State state, sameState;
+
+    @Setup
+    public void setUp()
+    {
+        model = Positions.afterMoves(6 * Hearts.NUM_PLAYERS + 1);
+        game = Positions.newGame(model);
+        moves = new ArrayList<>();
+
+        trickModel = Positions.beforeTrickEnds();
+        lastCard = Positions.newGame(trickModel).moves().get(0).ordinal();
+
+        state = State.fromModel(model, model.getActivePlayer());
+        sameState = State.fromModel(new Model(model), model.getActivePlayer());
+    }
+
+    @Benchmark
+    public Model copyModel()
+    {
+        return new Model(model);
+    }
+
+    @Benchmark
+    public List<Card> moves()
+    {
+        return game.moves();
+    }
+
+    // The variant used by search, which fills a list it already has
+    @Benchmark
+    public List<Card> movesIntoList()
+    {
+        game.moves(moves);
+        return moves;
+    }
+
+    @Benchmark
+    public GameID stateFromModel()
+    {
+        return State.fromModel(model, model.getActivePlayer());
+    }
+
+    @Benchmark
+    public int stateHashCode()
+    {
+        return state.hashCode();
+    }
+
+    @Benchmark
+    public boolean stateEquals()
+    {
+        return state.equals(sameState);
+    }
+
+    /**
+     * Plays the last card of a trick, which ends it, and then undoes the
+     * move, so every invocation starts from the same position
+     */
+    @Benchmark
+    public int endTrick()
+    {
+        final long token = trickModel.makeMove(lastCard);
+        final int winner = trickModel.getActivePlayer();
+        trickModel.unmakeMove(token);
+        return winner;
+    }
+
+}
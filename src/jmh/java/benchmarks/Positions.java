@@ -0,0 +1,57 @@
+package benchmarks;
+
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+import model.Model;
+
+import java.util.List;
+
+/**
+ * Seeded positions for the benchmarks, so every run measures the same cards
+ */
+final class Positions {
+
+    static final long SEED = 20;
+
+    private Positions() {}
+
+    /**
+     * @return A game with no view, ready for AI search
+     */
+    static Hearts newGame(Model model)
+    {
+        model.setRunningAITurn(true); // Do not print each trick
+        Hearts game = new Hearts(model);
+        game.setAllPlayerTypes(PlayerType.UCT_AI);
+        return game;
+    }
+
+    /**
+     * @return A model after the given number of moves from a seeded deal, each the lowest legal card
+     */
+    static Model afterMoves(int numMoves)
+    {
+        Model model = new Model(SEED);
+        Hearts game = newGame(model);
+        for (int i = 0; i < numMoves; ++i) {
+            game.makeMove(game.moves().get(0));
+        }
+        return model;
+    }
+
+    /**
+     * @return A model in which three cards of a trick in the middle of the round have been played
+     */
+    static Model beforeTrickEnds()
+    {
+        Model model = afterMoves(5 * Hearts.NUM_PLAYERS);
+        Hearts game = newGame(model);
+        while (model.getTrickSize() < Hearts.NUM_PLAYERS - 1) {
+            List<Card> moves = game.moves();
+            game.makeMove(moves.get(moves.size() - 1));
+        }
+        return model;
+    }
+
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the bytes allocated
+ * per operation to each score, and writes the results as JSON to a file
+ * named for the date, so results can be compared over time.
+ *
+ * Usage: RunBenchmarks [regex] [results directory], defaulting to every
+ * benchmark and jmh-results
+ *
+ * The benchmarks can also be run with JMH's own command line, e.g.,
+ * java -jar target/benchmarks.jar -prof gc -rf json
+ */
+public class RunBenchmarks {
+
+    public static void main(String[] args) throws RunnerException
+    {
+        final String include = args.length > 0 ? args[0] : "benchmarks\\..*";
+        final Path directory = Paths.get(args.length > 1 ? args[1] : "jmh-results");
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            System.err.printf("Failed to create directory '%s': %s\n", directory, e.getMessage());
+            System.exit(1);
+        }
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(directory.resolve(LocalDate.now() + ".json").toString())
+                .build();
+        new Runner(options).run();
+    }
+
+}
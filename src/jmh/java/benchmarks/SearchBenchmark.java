@@ -0,0 +1,68 @@
+package benchmarks;
+
+import algorithms.SearchBudget;
+import algorithms.UCTAlgorithm;
+import algorithms.XorShiftRandom;
+import game.Hearts;
+import game.HeartsPlayout;
+import model.Card;
+import model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The search hot paths: UCT search, and a single playout. CFR training
+ * is in TrainingBenchmark. Searches run on one thread with a budget of
+ * iterations, so the scores are playouts per second and do not depend on
+ * the number of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int UCT_ITERATIONS = 2000;
+
+    private Hearts game;
+    private Model model;
+    private HeartsPlayout playout;
+    private XorShiftRandom rng;
+    private int[] scores;
+
+    @Setup
+    public void setUp()
+    {
+        model = Positions.afterMoves(2 * Hearts.NUM_PLAYERS);
+        game = Positions.newGame(model);
+        playout = new HeartsPlayout(HeartsPlayout.Policy.RANDOM);
+        rng = new XorShiftRandom(Positions.SEED);
+        scores = new int[Hearts.NUM_PLAYERS];
+    }
+
+    /**
+     * A whole search from a new searcher, scored in playouts per second
+     */
+    @Benchmark
+    @OperationsPerInvocation(UCT_ITERATIONS)
+    public Card uctPlayouts()
+    {
+        UCTAlgorithm<Card> searcher = new UCTAlgorithm<>(game);
+        searcher.setBudget(SearchBudget.ofIterations(UCT_ITERATIONS));
+        searcher.setSeed(Positions.SEED);
+        return searcher.uct();
+    }
+
+    /**
+     * A random playout to the end of the round, which is undone when it finishes
+     */
+    @Benchmark
+    public int playout()
+    {
+        return playout.playout(model, rng, scores);
+    }
+
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import algorithms.CounterfactualRegretMinimizer;
+import algorithms.TrainingStats;
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One CFR training iteration on one thread, for each sampling mode. Kept
+ * apart from SearchBenchmark, since JMH runs every benchmark of a class
+ * for each value of its parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainingBenchmark {
+
+    @Param({"EXTERNAL", "OUTCOME"})
+    public CounterfactualRegretMinimizer.Sampling sampling;
+
+    private CounterfactualRegretMinimizer<Card> trainer;
+
+    @Setup
+    public void setUp()
+    {
+        Hearts trainingGame = new Hearts();
+        trainingGame.setAllPlayerTypes(PlayerType.CFR_AI);
+        trainingGame.setTraining(true);
+        trainer = new CounterfactualRegretMinimizer<>(trainingGame, 2000);
+        trainer.setSampling(sampling);
+
+        // Most info sets the measured iterations touch already exist, as in a long training run
+        trainer.trainBatch(500);
+    }
+
+    @Benchmark
+    public TrainingStats cfrIteration()
+    {
+        return trainer.trainBatch(1);
+    }
+
+}
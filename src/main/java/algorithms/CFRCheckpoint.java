@@ -0,0 +1,373 @@
+package algorithms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary CFR checkpoint, opened read-only through memory mapping.
+ *
+ * Layout (all values little-endian):
+ *
+ *   Header:    int magic, int version, int numPlayers, int update rule variant, long iterations,
+ *              double alpha, double beta, double gamma (see UpdateRule)
+ *   Directory: for each player, long indexPosition, long valuesPosition, int numInfoSets, int reserved
+ *   Index:     for each player, its keys sorted in ascending order (8 bytes each), then the
+ *              offset of each key's values in doubles (4 bytes each), then each key's number
+ *              of actions (1 byte each), padded to a multiple of 8 bytes
+ *   Values:    for each player, for each key in index order, the accumulated strategy values,
+ *              then the accumulated regrets
+ *
+ * Keys are found by binary search over the mapped index, so opening a
+ * checkpoint does not read or parse the whole file. Version 1 files have
+ * no update rule, and a 24 byte header, and were trained with
+ * UpdateRule.VANILLA.
+ */
+public class CFRCheckpoint {
+
+    public static final int MAGIC = 0x52464348; // "HCFR" when written little-endian
+    public static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 48, V1_HEADER_BYTES = 24, DIRECTORY_ENTRY_BYTES = 24;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private final int numPlayers;
+    private final long iterations;
+    private final UpdateRule updateRule;
+    private final long[] indexPositions, valuesPositions;
+    private final int[] numInfoSets;
+    private final MappedRegion file;
+
+    private CFRCheckpoint(MappedRegion file) throws IOException
+    {
+        this.file = file;
+        numPlayers = file.getInt(8);
+        iterations = file.getLong(16);
+
+        long directory = V1_HEADER_BYTES;
+        if (file.getInt(4) == 1) {
+            updateRule = UpdateRule.VANILLA;
+        } else {
+            final int variant = file.getInt(12);
+            if (variant < 0 || variant >= UpdateRule.Variant.values().length) {
+                throw new IOException("Unknown update rule " + variant);
+            }
+            updateRule = UpdateRule.of(UpdateRule.Variant.values()[variant],
+                    file.getDouble(24), file.getDouble(32), file.getDouble(40));
+            directory = HEADER_BYTES;
+        }
+
+        indexPositions = new long[numPlayers];
+        valuesPositions = new long[numPlayers];
+        numInfoSets = new int[numPlayers];
+        for (int player = 0; player < numPlayers; ++player) {
+            final long entry = directory + (long) player * DIRECTORY_ENTRY_BYTES;
+            indexPositions[player] = file.getLong(entry);
+            valuesPositions[player] = file.getLong(entry + 8);
+            numInfoSets[player] = file.getInt(entry + 16);
+        }
+    }
+
+    public int numPlayers() { return numPlayers; }
+    public long iterations() { return iterations; }
+    public UpdateRule updateRule() { return updateRule; }
+    public int numInfoSets(int playerID) { return numInfoSets[playerID]; }
+
+    /**
+     * Checks whether a file starts with the checkpoint's magic number
+     */
+    public static boolean isCheckpoint(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            return channel.read(magic, 0) == Integer.BYTES && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Maps a checkpoint file read-only
+     *
+     * @throws IOException If the file cannot be read, or is not a checkpoint of a supported version
+     */
+    public static CFRCheckpoint open(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < V1_HEADER_BYTES) {
+                throw new IOException("File is too short to be a checkpoint");
+            }
+
+            MappedRegion file = new MappedRegion(channel, 0, channel.size());
+            if (file.getInt(0) != MAGIC) {
+                throw new IOException("File is not a checkpoint");
+            }
+            if (file.getInt(4) != 1 && file.getInt(4) != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + file.getInt(4));
+            }
+
+            // The mapping stays valid after the channel is closed
+            return new CFRCheckpoint(file);
+        }
+    }
+
+    /**
+     * Reads the whole checkpoint into memory, so later lookups do not wait on the disk
+     */
+    public void preload()
+    {
+        file.load();
+    }
+
+    /**
+     * @return Index of the key in the player's index, or -1 if it is not present
+     */
+    public int find(int playerID, long key)
+    {
+        final long keys = indexPositions[playerID];
+        int low = 0, high = numInfoSets[playerID] - 1;
+
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midKey = file.getLong(keys + (long) mid * Long.BYTES);
+
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    public long key(int playerID, int index)
+    {
+        return file.getLong(indexPositions[playerID] + (long) index * Long.BYTES);
+    }
+
+    public int numActions(int playerID, int index)
+    {
+        final long lengths = indexPositions[playerID] + (long) numInfoSets[playerID] * (Long.BYTES + Integer.BYTES);
+        return file.getByte(lengths + index) & 0xFF;
+    }
+
+    public double strategy(int playerID, int index, int action)
+    {
+        return file.getDouble(valuePosition(playerID, index) + (long) action * Double.BYTES);
+    }
+
+    public double regret(int playerID, int index, int action)
+    {
+        final int numActions = numActions(playerID, index);
+        return file.getDouble(valuePosition(playerID, index) + (long) (numActions + action) * Double.BYTES);
+    }
+
+    private long valuePosition(int playerID, int index)
+    {
+        final long offsets = indexPositions[playerID] + (long) numInfoSets[playerID] * Long.BYTES;
+        final long offset = file.getInt(offsets + (long) index * Integer.BYTES) & 0xFFFFFFFFL;
+        return valuesPositions[playerID] + offset * Double.BYTES;
+    }
+
+    /**
+     * Copies every information set into the given tables, e.g., to resume training
+     */
+    public void loadInto(InfoSetTable strategies, InfoSetTable regrets)
+    {
+        for (int player = 0; player < numPlayers; ++player) {
+            for (int i = 0; i < numInfoSets[player]; ++i) {
+                final int numActions = numActions(player, i);
+                double[] strategyValues = new double[numActions];
+                double[] regretValues = new double[numActions];
+
+                for (int action = 0; action < numActions; ++action) {
+                    strategyValues[action] = strategy(player, i, action);
+                    regretValues[action] = regret(player, i, action);
+                }
+
+                strategies.put(player, key(player, i), strategyValues);
+                regrets.put(player, key(player, i), regretValues);
+            }
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the given tables. The file is written next to
+     * the destination and then moved over it, so an interrupted save never
+     * leaves a partial checkpoint behind.
+     */
+    public static void write(Path path, InfoSetTable strategies, InfoSetTable regrets, long iterations,
+                             UpdateRule updateRule) throws IOException
+    {
+        final int numPlayers = strategies.numPlayers();
+
+        // Sort each player's keys, and lay out the file
+        long[][] keys = new long[numPlayers][];
+        long[] indexPositions = new long[numPlayers], valuesPositions = new long[numPlayers];
+        long position = HEADER_BYTES + (long) numPlayers * DIRECTORY_ENTRY_BYTES;
+
+        for (int player = 0; player < numPlayers; ++player) {
+            keys[player] = strategies.keys(player);
+            Arrays.sort(keys[player]);
+
+            final int n = keys[player].length;
+            indexPositions[player] = position;
+            position = align(position + (long) n * (Long.BYTES + Integer.BYTES + 1));
+        }
+        for (int player = 0; player < numPlayers; ++player) {
+            valuesPositions[player] = position;
+            for (long key : keys[player]) {
+                position += 2L * InfoSetTable.numActions(strategies.find(player, key)) * Double.BYTES;
+            }
+        }
+
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(numPlayers);
+            out.putInt(updateRule.getVariant().ordinal());
+            out.putLong(iterations);
+            out.putDouble(updateRule.getAlpha());
+            out.putDouble(updateRule.getBeta());
+            out.putDouble(updateRule.getGamma());
+
+            for (int player = 0; player < numPlayers; ++player) {
+                out.putLong(indexPositions[player]);
+                out.putLong(valuesPositions[player]);
+                out.putInt(keys[player].length);
+                out.putInt(0);
+            }
+
+            for (int player = 0; player < numPlayers; ++player) {
+                long offset = 0;
+                for (long key : keys[player]) {
+                    out.putLong(key);
+                }
+                for (long key : keys[player]) {
+                    out.putInt((int) offset);
+                    offset += 2L * InfoSetTable.numActions(strategies.find(player, key));
+                }
+                for (long key : keys[player]) {
+                    out.putByte((byte) InfoSetTable.numActions(strategies.find(player, key)));
+                }
+                out.pad();
+            }
+
+            for (int player = 0; player < numPlayers; ++player) {
+                for (long key : keys[player]) {
+                    final long strategy = strategies.find(player, key);
+                    final long regret = regrets.find(player, key);
+                    final int numActions = InfoSetTable.numActions(strategy);
+
+                    for (int action = 0; action < numActions; ++action) {
+                        out.putDouble(strategies.get(strategy, action));
+                    }
+                    for (int action = 0; action < numActions; ++action) {
+                        final boolean hasRegret = regret != InfoSetTable.NOT_FOUND && action < InfoSetTable.numActions(regret);
+                        out.putDouble(hasRegret ? regrets.get(regret, action) : 0);
+                    }
+                }
+            }
+
+            out.flush();
+            channel.force(false);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long align(long position)
+    {
+        return (position + Long.BYTES - 1) & ~(Long.BYTES - 1);
+    }
+
+    // Buffers writes to a channel
+    private static class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position;
+
+        Writer(FileChannel channel)
+        {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void putByte(byte b) throws IOException { ensure(1); buffer.put(b); ++position; }
+        void putInt(int i) throws IOException { ensure(Integer.BYTES); buffer.putInt(i); position += Integer.BYTES; }
+        void putLong(long l) throws IOException { ensure(Long.BYTES); buffer.putLong(l); position += Long.BYTES; }
+        void putDouble(double d) throws IOException { ensure(Double.BYTES); buffer.putDouble(d); position += Double.BYTES; }
+
+        void pad() throws IOException
+        {
+            while (position != align(position)) {
+                putByte((byte) 0);
+            }
+        }
+
+        void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int n) throws IOException
+        {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * A read-only mapping of part of a file. A single MappedByteBuffer is
+     * limited to 2 GB, so large regions are mapped as several segments.
+     * Segments are a multiple of 8 bytes long, so aligned values never
+     * span two segments.
+     */
+    static class MappedRegion {
+        private static final int SEGMENT_BITS = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+        private final MappedByteBuffer[] segments;
+
+        MappedRegion(FileChannel channel, long position, long size) throws IOException
+        {
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; ++i) {
+                final long start = (long) i << SEGMENT_BITS;
+                final long length = Math.min(size - start, 1L << SEGMENT_BITS);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, length);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        void load()
+        {
+            for (MappedByteBuffer segment : segments) {
+                segment.load();
+            }
+        }
+
+        byte getByte(long position) { return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK)); }
+        int getInt(long position) { return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & SEGMENT_MASK)); }
+        long getLong(long position) { return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & SEGMENT_MASK)); }
+        double getDouble(long position) { return segments[(int) (position >>> SEGMENT_BITS)].getDouble((int) (position & SEGMENT_MASK)); }
+    }
+
+}
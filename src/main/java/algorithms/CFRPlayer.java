@@ -1,64 +1,122 @@
 package algorithms;
 
 import game.Hearts;
-import game.State;
 import model.Card;
 
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 
+/**
+ * Plays cards from a trained CFR strategy.
+ *
+ * Strategies are looked up in a memory-mapped checkpoint (see
+ * CFRCheckpoint), and each action distribution is decoded when it is
+ * needed, so the strategy is never copied onto the heap. Until the
+ * checkpoint is ready, or if it cannot be opened, cards are chosen
+ * uniformly at random.
+ */
 public class CFRPlayer {
 
-    private List<Map<GameID, List<Double>>> strategies;
+    public static final String DEFAULT_FILENAME = "cfrtraining.bin";
+
+    private volatile CFRCheckpoint checkpoint; // Null until ready
     private Hearts game;
     private Random rng;
 
     public CFRPlayer(Hearts game)
+    {
+        this(game, DEFAULT_FILENAME, false);
+    }
+
+    /**
+     * @param filename The checkpoint to play from
+     * @param warmUpInBackground Whether to open the checkpoint and read it into memory on a
+     *                           background thread. Cards are chosen at random until it finishes
+     */
+    public CFRPlayer(Hearts game, String filename, boolean warmUpInBackground)
     {
         this.game = game;
         this.rng = new Random();
 
-        CounterfactualRegretMinimizer<Card> minimizer = new CounterfactualRegretMinimizer<>(Hearts.NUM_PLAYERS);
-
-        boolean loaded = minimizer.load("cfrtraining.txt");
-        if (!loaded) {
-            System.err.println("Failed to load CFR training data.");
-            System.exit(1);
+        if (warmUpInBackground) {
+            Thread warmUp = new Thread(() -> open(filename, true), "cfr-warm-up");
+            warmUp.setDaemon(true);
+            warmUp.start();
+        } else {
+            open(filename, false);
         }
+    }
 
-        strategies = minimizer.getStrategies();
+    /**
+     * Plays from a checkpoint that is already open, which may be shared by
+     * players in many games at once
+     *
+     * @param checkpoint The checkpoint, or null to choose cards at random
+     * @param seed Seed for choosing cards from the strategy
+     */
+    public CFRPlayer(Hearts game, CFRCheckpoint checkpoint, long seed)
+    {
+        this.game = game;
+        this.rng = new Random(seed);
+        this.checkpoint = checkpoint;
     }
 
-    // TODO CFR agent should likely take into account whether hearts has been broken or not
-    // Should probably only do this if I am able to do enough training
-    public Card chooseCard(List<Card> hand, boolean isFirstTrick,
-                                  boolean heartsBroken, Card[] cardsPlayed, int activePlayer)
+    private void open(String filename, boolean preload)
     {
-        State state = new State(hand, cardsPlayed, isFirstTrick);
-        final List<Double> relevantStrategies = strategies.get(activePlayer).get(state);
+        try {
+            CFRCheckpoint opened = CFRCheckpoint.open(Paths.get(filename));
+            if (preload) {
+                opened.preload();
+            }
+            checkpoint = opened;
+        } catch (NoSuchFileException e) {
+            System.err.printf("Failed to load CFR training data because '%s' does not exist. CFR players will play randomly.\n",
+                    filename);
+        } catch (IOException e) {
+            System.err.printf("Failed to load CFR training data from '%s': %s. CFR players will play randomly.\n",
+                    filename, e.getMessage());
+        }
+    }
 
+    public boolean isReady() { return checkpoint != null; }
+
+    public Card chooseCard(int activePlayer)
+    {
         // Get all valid moves for this player
         List<Card> validMoves = game.moves();
 
-        if (relevantStrategies == null) {
+        final CFRCheckpoint strategies = checkpoint;
+        final int index = strategies == null ? -1 : strategies.find(activePlayer, game.infoSetKey(activePlayer));
+
+        // Moves are in a deterministic order, so the i-th value is for the i-th valid move
+        if (index < 0 || strategies.numActions(activePlayer, index) != validMoves.size()) {
             // Return random card in validMoves (use uniform random distribution)
             return validMoves.get(rng.nextInt(validMoves.size()));
         }
 
-        // Generate random double
-        final double r = rng.nextDouble();
+        // The average strategy is proportional to the accumulated strategy values
+        double total = 0;
+        for (int move = 0; move < validMoves.size(); ++move) {
+            total += strategies.strategy(activePlayer, index, move);
+        }
+        if (total <= 0) {
+            return validMoves.get(rng.nextInt(validMoves.size()));
+        }
 
-        // Move up until we found the bucket for the probability
+        // Move up until we find the bucket for the random value
+        final double r = rng.nextDouble() * total;
         double sum = 0.0;
-        int index = 0;
-        while (sum < r) {
-            sum += relevantStrategies.get(index);
-            ++index;
+        for (int move = 0; move < validMoves.size() - 1; ++move) {
+            sum += strategies.strategy(activePlayer, index, move);
+            if (r < sum) {
+                return validMoves.get(move);
+            }
         }
 
-        // Return card at this index
-        return validMoves.get(index);
+        return validMoves.get(validMoves.size() - 1);
     }
 
 }
@@ -6,63 +6,121 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CounterfactualRegretMinimizer<S> {
 
+    /**
+     * How each training iteration explores the game tree. Every iteration
+     * samples a deal.
+     *
+     * FULL recurses into every move at every node. EXTERNAL runs one
+     * traversal per player, which recurses into every move of that player,
+     * and samples one move for every other player. OUTCOME samples a
+     * single path through the tree per player, exploring the traversing
+     * player's moves with probability OUTCOME_EXPLORATION.
+     */
+    public enum Sampling { FULL, EXTERNAL, OUTCOME }
+
+    private static final double OUTCOME_EXPLORATION = 0.6;
+
     private GameInterface<S> m_game;
     private int numPlayers;
-    private List<Map<GameID, List<Double>>> aggregateRegrets;
-    private List<Map<GameID, List<Double>>> aggregateStrategies;
+    private InfoSetTable aggregateRegrets;
+    private InfoSetTable aggregateStrategies;
 
-    private int trainDepth, maxTrainDepth;
+    private int maxTrainDepth;
+    private long iterations; // Total iterations trained, including those loaded from a checkpoint
+    private int numThreads;
+    private ForkJoinPool pool;
+    private Sampling sampling;
+    private UpdateRule updateRule;
+    private TrainingStats lastTrainingStats;
+
+    // Set for each batch: the update rule's weights for the updates of each of its iterations
+    private double[] positiveRegretWeights, negativeRegretWeights, strategyWeights;
+    private final AtomicInteger nextIteration = new AtomicInteger();
 
     public CounterfactualRegretMinimizer(GameInterface<S> g, int maxTrainDepth)
     {
         m_game = g;
         this.maxTrainDepth = maxTrainDepth;
-        trainDepth = 0;
         numPlayers = m_game.numPlayers();
+        numThreads = 1;
+        sampling = Sampling.FULL;
+        updateRule = UpdateRule.VANILLA;
 
-        aggregateRegrets = new ArrayList<>();
-        aggregateStrategies = new ArrayList<>();
-        initAggregateList(aggregateRegrets);
-        initAggregateList(aggregateStrategies);
+        aggregateRegrets = new InfoSetTable(numPlayers);
+        aggregateStrategies = new InfoSetTable(numPlayers);
     }
 
     public CounterfactualRegretMinimizer(int numPlayers)
     {
         this.numPlayers = numPlayers;
+        updateRule = UpdateRule.VANILLA;
     }
 
-    private void initAggregateList(List<Map<GameID, List<Double>>> list)
+    public InfoSetTable getStrategies() { return aggregateStrategies; }
+    public InfoSetTable getRegrets() { return aggregateRegrets; }
+    public TrainingStats getLastTrainingStats() { return lastTrainingStats; }
+
+    public void setSampling(Sampling sampling) { this.sampling = sampling; }
+    public UpdateRule getUpdateRule() { return updateRule; }
+
+    public void solve(String outputFilename, int itersPerSave, int itersPerUpdate, int maxIterations)
     {
-        for (int i = 0; i < numPlayers; ++i) {
-            list.add(new HashMap<>());
-        }
+        solve(outputFilename, itersPerSave, itersPerUpdate, maxIterations, updateRule);
     }
 
-    public List<Map<GameID, List<Double>>> getStrategies() { return aggregateStrategies; }
+    /**
+     * Sets the number of threads used to run training iterations. Each
+     * thread runs whole iterations on its own copy of the game, and all
+     * threads accumulate into the same regret and strategy tables.
+     */
+    public void setNumThreads(int n)
+    {
+        numThreads = Math.max(1, n);
+        pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+    }
 
-    public void solve(String outputFilename, int itersPerSave, int itersPerUpdate, int maxIterations)
+    /**
+     * Trains, saving a checkpoint every itersPerSave iterations
+     *
+     * @param updateRule How regrets and strategies are accumulated. A run resumed from a
+     *                   checkpoint keeps the checkpoint's rule, and ignores this one
+     */
+    public void solve(String outputFilename, int itersPerSave, int itersPerUpdate, int maxIterations, UpdateRule updateRule)
     {
+        if (iterations == 0) {
+            this.updateRule = updateRule;
+        } else if (!updateRule.equals(this.updateRule)) {
+            System.err.printf("Resumed training uses the update rule %s, not %s.\n", this.updateRule, updateRule);
+        }
+
         // Initialize training counters
         int saveCounter = 0, totalIterations = 0;
-        System.out.println("Beginning training.");
+        System.out.printf("Beginning training with update rule %s.\n", this.updateRule);
 
         while (totalIterations < maxIterations) {
             // Train the model
-            train(itersPerUpdate);
+            // All iterations have finished when train returns, so checkpoints are consistent
+            trainBatch(itersPerUpdate);
 
             saveCounter += itersPerUpdate;
             totalIterations += itersPerUpdate;
-            System.out.printf("Completed iteration %d.\n", totalIterations);
+            System.out.printf("Completed iteration %d: %s.\n", totalIterations, lastTrainingStats);
 
             // Save a checkpoint
             if (saveCounter >= itersPerSave) {
                 saveCounter = saveCounter % itersPerSave;
-                System.out.println("Saving...");
+                System.out.printf("Saving... (%.1f bytes per information set)\n", aggregateStrategies.bytesPerInfoSet());
                 save(outputFilename);
             }
         }
@@ -70,325 +128,554 @@ public class CounterfactualRegretMinimizer<S> {
         System.out.println("Reached max iterations. Will now stop training.");
     }
 
-    private void train(int numIterations)
+    /**
+     * Runs a batch of training iterations, without saving
+     *
+     * @return Statistics about the batch
+     */
+    public TrainingStats trainBatch(int numIterations)
     {
-        for (int i = 0; i < numIterations; ++i) {
-            GameInterface<S> copy = m_game.deepCopy();
-            copy.beginGame();
-
-            List<Double> probabilities = newList(numPlayers, 1.0);
+        final long startNanos = System.nanoTime();
+        discount(numIterations);
+        positiveRegretWeights = updateRule.positiveRegretWeights(iterations, numIterations);
+        negativeRegretWeights = updateRule.negativeRegretWeights(iterations, numIterations);
+        strategyWeights = updateRule.strategyWeights(iterations, numIterations);
+        nextIteration.set(0);
+        final long infoSetsTouched = train(numIterations);
+        iterations += numIterations;
+
+        lastTrainingStats = new TrainingStats(numIterations, infoSetsTouched, System.nanoTime() - startNanos);
+        return lastTrainingStats;
+    }
 
-            train(copy, probabilities);
+    // Applies the update rule's discounts for the iterations about to be trained to the earlier ones
+    private void discount(int numIterations)
+    {
+        if (!updateRule.discounts()) {
+            return;
         }
+
+        aggregateRegrets.scale(updateRule.positiveRegretDiscount(iterations, numIterations),
+                updateRule.negativeRegretDiscount(iterations, numIterations));
+        final double strategyDiscount = updateRule.strategyDiscount(iterations, numIterations);
+        aggregateStrategies.scale(strategyDiscount, strategyDiscount);
     }
 
-    private List<Double> train(final GameInterface<S> game, final List<Double> probabilities)
+    // Runs training iterations, and returns the number of info sets touched
+    private long train(int numIterations)
     {
-        // Check if game has ended or rounds has exceeded 14
-        // TODO Maybe I shouldn't be forcing ending at 14
-        if (game.isGameOver() || game.roundNumber() > 2) {
-            //System.out.printf("Scores: %s\n", Arrays.toString(game.scores()));
-            //System.out.println("A game ended");
-            assert(game.payout().size() >= 4);
-            //System.out.println("payout: "+game.payout());
-            return game.payout();
+        if (pool == null) {
+            return new Trainer().run(numIterations);
+        }
+
+        // Split the iterations as evenly as possible between the threads
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < numThreads; ++i) {
+            final int iterations = numIterations / numThreads + (i < numIterations % numThreads ? 1 : 0);
+            tasks.add(() -> new Trainer().run(iterations));
+        }
+
+        long infoSetsTouched = 0;
+        for (Future<Long> future : pool.invokeAll(tasks)) {
+            try {
+                infoSetsTouched += future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return infoSetsTouched;
+    }
+
+    /**
+     * Preallocated arrays for one level of a training traversal, so
+     * training does not allocate at each node
+     */
+    private class Frame {
+        final List<S> moves = new ArrayList<>();
+        final double[] reach = new double[numPlayers]; // Probability of each player's moves on the path to this node
+        final double[] utilities = new double[numPlayers];
+        double[] strategy = new double[0];
+        double[] actionUtilities = new double[0]; // numPlayers values per move
+
+        void ensureCapacity(int numMoves)
+        {
+            if (strategy.length < numMoves) {
+                strategy = new double[numMoves];
+                actionUtilities = new double[numMoves * numPlayers];
+            }
         }
+    }
 
-        if (trainDepth++ >= maxTrainDepth) {
-            return game.payout();
+    /**
+     * State for one thread of training. Each trainer has its own game, which
+     * it walks with makeMove/unmakeMove, and its own node count.
+     */
+    private class Trainer {
+        private final GameInterface<S> game;
+        private final Random rng;
+        private final double regretFloor;
+        private int trainDepth; // Number of nodes visited this iteration
+        private long infoSetsTouched;
+
+        // Indexed by depth below the root
+        private List<Frame> frames;
+
+        // Set by outcomeSample: the probability of the rest of the sampled path
+        private double tailProbability;
+
+        // The update rule's weights for the current iteration's updates
+        private double positiveRegretWeight, negativeRegretWeight, strategyWeight;
+
+        Trainer()
+        {
+            game = m_game.deepCopy();
+            rng = new Random();
+            regretFloor = updateRule.regretFloor();
+            frames = new ArrayList<>();
         }
-        System.out.println(trainDepth);
-
-        // TODO Temp
-        //System.out.printf("\nRound %d.\n", game.roundNumber());
-        if (game.roundNumber() > 14) {
-            System.err.println("Round number exceeded 13");
-            System.err.printf("Scores: %s\n", Arrays.toString(game.scores()));
-            System.exit(1);
+
+        // Returns the number of info sets touched
+        long run(int numIterations)
+        {
+            for (int i = 0; i < numIterations; ++i) {
+                // Iterations are numbered across all trainers, so each one's updates get their own weight
+                final int iteration = nextIteration.getAndIncrement();
+                positiveRegretWeight = positiveRegretWeights[iteration];
+                negativeRegretWeight = negativeRegretWeights[iteration];
+                strategyWeight = strategyWeights[iteration];
+
+                // Beginning the game samples the deal
+                game.beginGame();
+
+                switch (sampling) {
+                    case FULL:
+                        trainDepth = 0;
+                        Arrays.fill(frame(0).reach, 1.0);
+                        train(0);
+                        break;
+                    case EXTERNAL:
+                        for (int player = 0; player < numPlayers; ++player) {
+                            trainDepth = 0;
+                            externalSample(player, 0);
+                        }
+                        break;
+                    case OUTCOME:
+                        for (int player = 0; player < numPlayers; ++player) {
+                            trainDepth = 0;
+                            Arrays.fill(frame(0).reach, 1.0);
+                            outcomeSample(player, 0, 1.0);
+                        }
+                        break;
+                }
+            }
+
+            return infoSetsTouched;
         }
 
-        final int activePlayer = game.activePlayer();
-        final GameID id = game.getID(activePlayer);
+        // Adds to a regret, weighted for the current iteration
+        private void addRegret(long regrets, int move, double regret)
+        {
+            final double weight = regret >= 0 ? positiveRegretWeight : negativeRegretWeight;
+            aggregateRegrets.add(regrets, move, weight * regret, regretFloor);
+        }
 
-        if (!aggregateStrategies.get(activePlayer).containsKey(id)) {
-            aggregateStrategies.get(activePlayer).put(id, new ArrayList<>());
+        // Adds to an average strategy, weighted for the current iteration
+        private void addStrategy(long strategies, int move, double probability)
+        {
+            aggregateStrategies.add(strategies, move, strategyWeight * probability);
         }
 
-        final List<S> moves = game.moves();
-        //System.out.println(moves.size());
-
-        // Determine player's strategy
-        final List<Double> strategy = getStrategy(activePlayer, id, moves);
-        List<List<Double>> actionUtilities = new ArrayList<>();
-        List<Double> nodeUtilies = newList(numPlayers, 0.0);
-        assert(nodeUtilies.size() >= 4);
-
-        // Recursively train on each action
-        for (int move = 0; move < moves.size(); ++move) {
-            // Branch on player's action
-            GameInterface<S> gameCopy = game.deepCopy();
-            gameCopy.makeMove(moves.get(move));
-            List<Double> probabilitiesCopy = new ArrayList<>(probabilities);
-            multInPlace(probabilitiesCopy, activePlayer, strategy.get(move));
-
-            // Update utilities
-            List<Double> trainResults = train(gameCopy, probabilitiesCopy);
-            //System.out.println("trainResults: "+trainResults);
-            assert(trainResults.size() >= 4);
-            //actionUtilities.add(train(gameCopy, probabilitiesCopy));
-            actionUtilities.add(trainResults);
-            for (int agent = 0; agent < numPlayers; ++agent) {
-                //System.out.println("actionUtilities.get(move): "+actionUtilities.get(move));
-                final double toAdd = strategy.get(move) * actionUtilities.get(move).get(agent);
-                addInPlace(nodeUtilies, agent, toAdd);
+        private Frame frame(int depth)
+        {
+            while (frames.size() <= depth) {
+                frames.add(new Frame());
             }
+            return frames.get(depth);
         }
 
-        // Make sure we have all zeroes in aggregateRegrets and aggregateStrategies
-        setToZeroes(aggregateRegrets.get(activePlayer).get(id), moves.size());
-        setToZeroes(aggregateStrategies.get(activePlayer).get(id), moves.size());
+        // Whether a traversal should stop, and use the payout of the current state
+        private boolean isLeaf()
+        {
+            // Check if game has ended or rounds has exceeded 14
+            // TODO Maybe I shouldn't be forcing ending at 14
+            return game.isGameOver() || game.roundNumber() > 2 || trainDepth++ >= maxTrainDepth;
+        }
 
-        // Accumulate counterfactual regret
-        for (int move = 0; move < moves.size(); ++move) {
-            double counterfactual = 1.0;
+        // Sets up the frame for the active player's node, and returns the number of moves
+        private int expand(Frame frame)
+        {
+            game.moves(frame.moves);
+            final int numMoves = frame.moves.size();
+            frame.ensureCapacity(numMoves);
+            ++infoSetsTouched;
+            return numMoves;
+        }
+
+        /**
+         * Full CFR: recurses into every move. The reach probabilities of this
+         * node must be in the depth's frame
+         *
+         * @return The node's utility for each player
+         */
+        private double[] train(int depth)
+        {
+            final Frame frame = frame(depth);
+
+            if (isLeaf()) {
+                game.payout(frame.utilities);
+                return frame.utilities;
+            }
+
+            final int activePlayer = game.activePlayer();
+            final long infoSetKey = game.infoSetKey(activePlayer);
+            final int numMoves = expand(frame);
+
+            // Determine player's strategy
+            // If no historical data for this information set, make a new entry for this information set
+            final long regrets = aggregateRegrets.getOrCreate(activePlayer, infoSetKey, numMoves);
+            final long strategies = aggregateStrategies.getOrCreate(activePlayer, infoSetKey, numMoves);
+            final double[] strategy = frame.strategy;
+            getStrategy(regrets, numMoves, strategy);
+
+            final double[] nodeUtilities = frame.utilities;
+            final double[] actionUtilities = frame.actionUtilities;
+            Arrays.fill(nodeUtilities, 0.0);
+
+            // Recursively train on each action
+            final Frame child = frame(depth + 1);
+            for (int move = 0; move < numMoves; ++move) {
+                // Branch on player's action
+                final long undoToken = game.makeMove(frame.moves.get(move));
+                System.arraycopy(frame.reach, 0, child.reach, 0, numPlayers);
+                child.reach[activePlayer] *= strategy[move];
+
+                // Update utilities, then restore the game for the next branch
+                final double[] trainResults = train(depth + 1);
+                game.unmakeMove(undoToken);
+                System.arraycopy(trainResults, 0, actionUtilities, move * numPlayers, numPlayers);
+                for (int agent = 0; agent < numPlayers; ++agent) {
+                    nodeUtilities[agent] += strategy[move] * trainResults[agent];
+                }
+            }
 
             // Calculate counterfactual probability
+            double counterfactual = 1.0;
             for (int agent = 0; agent < numPlayers; ++agent) {
                 if (agent != activePlayer) {
-                    counterfactual *= probabilities.get(agent);
+                    counterfactual *= frame.reach[agent];
                 }
             }
 
-            // Update regrets
-            final double regret = actionUtilities.get(move).get(activePlayer) -
-                    nodeUtilies.get(activePlayer);
-            addInPlace(aggregateRegrets.get(activePlayer).get(id), move,
-                    counterfactual * regret);
-            addInPlace(aggregateStrategies.get(activePlayer).get(id), move,
-                    counterfactual * strategy.get(move));
+            // Accumulate counterfactual regret
+            for (int move = 0; move < numMoves; ++move) {
+                // Update regrets
+                final double regret = actionUtilities[move * numPlayers + activePlayer] - nodeUtilities[activePlayer];
+                addRegret(regrets, move, counterfactual * regret);
+                addStrategy(strategies, move, counterfactual * strategy[move]);
+            }
+
+            return nodeUtilities;
         }
 
-        //System.out.println("nodeUtilities: "+nodeUtilies);
-        //System.out.flush();
-        return nodeUtilies;
-    }
+        /**
+         * External sampling: recurses into every move of the traversing
+         * player, and samples one move at every other player's node from
+         * their current strategy
+         *
+         * @return The traversing player's sampled utility
+         */
+        private double externalSample(int traverser, int depth)
+        {
+            final Frame frame = frame(depth);
+
+            if (isLeaf()) {
+                game.payout(frame.utilities);
+                return frame.utilities[traverser];
+            }
 
-    private void setToZeroes(List<Double> list, int n) {
-        if (list.isEmpty()) {
-            list.addAll(Collections.nCopies(n, 0.0));
-        }
-    }
+            final int activePlayer = game.activePlayer();
+            final long infoSetKey = game.infoSetKey(activePlayer);
+            final int numMoves = expand(frame);
 
-    private void save(String filename)
-    {
-        try {
-            FileWriter writer = new FileWriter(filename, true); // true means append to file
-            PrintWriter out = new PrintWriter(new BufferedWriter(writer));
-            save(out);
-        } catch (IOException e) {
-            System.err.printf("Failed to save to file '%s': %s.\n", filename, e.getMessage());
-        }
-    }
+            // Create both entries, even where only one is updated, so a checkpoint of the strategies keeps every regret
+            final long regrets = aggregateRegrets.getOrCreate(activePlayer, infoSetKey, numMoves);
+            final long strategies = aggregateStrategies.getOrCreate(activePlayer, infoSetKey, numMoves);
+            final double[] strategy = frame.strategy;
+            getStrategy(regrets, numMoves, strategy);
 
-    private void save(PrintWriter out)
-    {
-        // Write probabilities to file
-        out.println("Probabilities");
-        saveData(out, aggregateStrategies, true);
+            if (activePlayer != traverser) {
+                // Other players' average strategies are updated where their moves are sampled
+                for (int move = 0; move < numMoves; ++move) {
+                    addStrategy(strategies, move, strategy[move]);
+                }
 
-        // Write raw data for aggregate strategies to file
-        out.println("Strategies");
-        saveData(out, aggregateStrategies, false);
+                final long undoToken = game.makeMove(frame.moves.get(sample(strategy, numMoves)));
+                final double utility = externalSample(traverser, depth + 1);
+                game.unmakeMove(undoToken);
+                return utility;
+            }
 
-        out.println("Regrets");
-        saveData(out, aggregateRegrets, false);
+            final double[] actionUtilities = frame.actionUtilities;
+            double nodeUtility = 0;
+            for (int move = 0; move < numMoves; ++move) {
+                final long undoToken = game.makeMove(frame.moves.get(move));
+                actionUtilities[move] = externalSample(traverser, depth + 1);
+                game.unmakeMove(undoToken);
+                nodeUtility += strategy[move] * actionUtilities[move];
+            }
 
-        out.close();
-    }
+            // Opponents' moves were sampled in proportion to their reach, so regrets are not weighted
+            for (int move = 0; move < numMoves; ++move) {
+                addRegret(regrets, move, actionUtilities[move] - nodeUtility);
+            }
 
-    private void saveData(PrintWriter out, List<Map<GameID, List<Double>>> aggregate, boolean divByTotal)
-    {
-        for (int player = 0; player < numPlayers; ++player) {
-            Map<GameID, List<Double>> map = aggregate.get(player);
-            out.printf("Player: %d\n", player);
-
-            for (GameID id : map.keySet()) {
-                final List<Double> strat = map.get(id);
-                final double total = sum(strat);
-
-                out.printf("%s\t", id);
-                for (double value : strat) {
-                    if (divByTotal) {
-                        out.printf(" %f", value / total);
-                    } else {
-                        out.printf(" %f", value);
+            return nodeUtility;
+        }
+
+        /**
+         * Outcome sampling: samples a single path through the tree. Moves of
+         * the traversing player are sampled from a mix of their strategy and
+         * a uniform distribution, so every move keeps being explored. The
+         * reach probabilities of this node must be in the depth's frame
+         *
+         * @param traverser The player whose regrets are updated
+         * @param sampleProbability The probability of sampling the path so far
+         * @return The traverser's utility, divided by the probability of sampling the whole path.
+         *         tailProbability is set to the probability of the path from this node on
+         */
+        private double outcomeSample(int traverser, int depth, double sampleProbability)
+        {
+            final Frame frame = frame(depth);
+
+            if (isLeaf()) {
+                tailProbability = 1.0;
+                game.payout(frame.utilities);
+                return frame.utilities[traverser] / sampleProbability;
+            }
+
+            final int activePlayer = game.activePlayer();
+            final long infoSetKey = game.infoSetKey(activePlayer);
+            final int numMoves = expand(frame);
+
+            // Create both entries, even where only one is updated, so a checkpoint of the strategies keeps every regret
+            final long regrets = aggregateRegrets.getOrCreate(activePlayer, infoSetKey, numMoves);
+            final long strategies = aggregateStrategies.getOrCreate(activePlayer, infoSetKey, numMoves);
+            final double[] strategy = frame.strategy;
+            getStrategy(regrets, numMoves, strategy);
+
+            // Sample a move, exploring if this is the traverser's node
+            final boolean exploring = activePlayer == traverser;
+            final int move;
+            if (exploring && rng.nextDouble() < OUTCOME_EXPLORATION) {
+                move = rng.nextInt(numMoves);
+            } else {
+                move = sample(strategy, numMoves);
+            }
+            final double moveProbability = strategy[move];
+            final double sampledProbability = exploring
+                    ? OUTCOME_EXPLORATION / numMoves + (1 - OUTCOME_EXPLORATION) * moveProbability
+                    : moveProbability;
+
+            final Frame child = frame(depth + 1);
+            System.arraycopy(frame.reach, 0, child.reach, 0, numPlayers);
+            child.reach[activePlayer] *= moveProbability;
+
+            final long undoToken = game.makeMove(frame.moves.get(move));
+            final double utility = outcomeSample(traverser, depth + 1, sampleProbability * sampledProbability);
+            game.unmakeMove(undoToken);
+
+            if (exploring) {
+                double opponentReach = 1.0;
+                for (int agent = 0; agent < numPlayers; ++agent) {
+                    if (agent != traverser) {
+                        opponentReach *= frame.reach[agent];
                     }
                 }
-                out.println();
+
+                // The sampled move's regret uses the path from it on, the others the path from this node on
+                final double weightedUtility = utility * opponentReach;
+                for (int other = 0; other < numMoves; ++other) {
+                    final double regret = other == move
+                            ? weightedUtility * tailProbability * (1 - moveProbability)
+                            : -weightedUtility * tailProbability * moveProbability;
+                    addRegret(regrets, other, regret);
+                }
+            } else {
+                // Weight the average strategy by the player's own reach, and by how unlikely this node was to be sampled
+                final double weight = frame.reach[activePlayer] / sampleProbability;
+                for (int other = 0; other < numMoves; ++other) {
+                    addStrategy(strategies, other, weight * strategy[other]);
+                }
+            }
+
+            tailProbability *= moveProbability;
+            return utility;
+        }
+
+        // Samples a move from the first numMoves values of a strategy
+        private int sample(double[] strategy, int numMoves)
+        {
+            final double r = rng.nextDouble();
+            double sum = 0;
+            for (int move = 0; move < numMoves - 1; ++move) {
+                sum += strategy[move];
+                if (r < sum) {
+                    return move;
+                }
             }
-            out.println("END");
+            return numMoves - 1;
         }
     }
 
+    /**
+     * Saves the regret and strategy tables as a binary checkpoint (see CFRCheckpoint)
+     */
+    public void save(String filename)
+    {
+        try {
+            CFRCheckpoint.write(Paths.get(filename), aggregateStrategies, aggregateRegrets, iterations, updateRule);
+        } catch (IOException e) {
+            System.err.printf("Failed to save to file '%s': %s.\n", filename, e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the regret and strategy tables from a binary checkpoint, or from
+     * a text file written by older versions
+     */
     public boolean load(String filename)
     {
         boolean succeeded = false;
+        final Path path = Paths.get(filename);
 
         try {
-            List<String> lines = Files.readAllLines(Paths.get(filename), StandardCharsets.UTF_8);
-            succeeded = load(lines);
-            if (!succeeded) {
-                System.err.printf("Could not parse file '%s'.\n", filename);
+            if (CFRCheckpoint.isCheckpoint(path)) {
+                CFRCheckpoint checkpoint = CFRCheckpoint.open(path);
+                aggregateStrategies = new InfoSetTable(numPlayers);
+                aggregateRegrets = new InfoSetTable(numPlayers);
+                checkpoint.loadInto(aggregateStrategies, aggregateRegrets);
+                iterations = checkpoint.iterations();
+                updateRule = checkpoint.updateRule();
+                succeeded = true;
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    succeeded = loadText(reader.lines().iterator());
+                }
+                if (!succeeded) {
+                    System.err.printf("Could not parse file '%s'.\n", filename);
+                }
             }
         } catch (NoSuchFileException e) {
             System.err.printf("Failed to read from file '%s' because it does not exist.\n", filename);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             System.err.printf("Failed to read from file '%s': %s.\n", filename, e.getMessage());
         }
 
         return succeeded;
     }
 
-    private boolean load(List<String> lines)
+    // Reads the old text format, one line at a time
+    private boolean loadText(Iterator<String> lines)
     {
-        String buffer = lines.remove(0);
-        if (!buffer.equalsIgnoreCase("probabilities")) {
-            return false;
-        }
+        try {
+            String buffer = lines.next();
+            if (!buffer.equalsIgnoreCase("probabilities")) {
+                return false;
+            }
 
-        // Read probabilities
-        for (int player = 0; player < numPlayers; ++player) {
-            lines.remove(0); // Discard line
-            buffer = lines.remove(0);
-            while (!buffer.equalsIgnoreCase("end")) {
-                buffer = lines.remove(0);
+            // Skip probabilities, which are computed from the strategies
+            for (int player = 0; player < numPlayers; ++player) {
+                lines.next(); // Discard line
+                buffer = lines.next();
+                while (!buffer.equalsIgnoreCase("end")) {
+                    buffer = lines.next();
+                }
             }
-        }
 
-        // Read raw data for aggregate strategies
-        buffer = lines.remove(0);
-        if (!buffer.equalsIgnoreCase("strategies")) {
-            return false;
-        }
+            // Read raw data for aggregate strategies
+            buffer = lines.next();
+            if (!buffer.equalsIgnoreCase("strategies")) {
+                return false;
+            }
 
-        aggregateStrategies = new ArrayList<>();
-        readData(lines, aggregateStrategies);
+            aggregateStrategies = new InfoSetTable(numPlayers);
+            readData(lines, aggregateStrategies);
 
-        buffer = lines.remove(0);
-        if (!buffer.equalsIgnoreCase("regrets")) {
-            return false;
-        }
+            buffer = lines.next();
+            if (!buffer.equalsIgnoreCase("regrets")) {
+                return false;
+            }
 
-        aggregateRegrets = new ArrayList<>();
-        readData(lines, aggregateRegrets);
+            aggregateRegrets = new InfoSetTable(numPlayers);
+            readData(lines, aggregateRegrets);
+        } catch (NoSuchElementException e) {
+            return false; // File ended early
+        }
 
         return true;
     }
 
-    private void readData(List<String> lines, List<Map<GameID, List<Double>>> aggregates)
+    private void readData(Iterator<String> lines, InfoSetTable aggregates)
     {
         String buffer;
 
         for (int player = 0; player < numPlayers; ++player) {
-            aggregates.add(new HashMap<>());
-            lines.remove(0); // Discard line
-            buffer = lines.remove(0);
+            lines.next(); // Discard line
+            buffer = lines.next();
 
             while (!buffer.equalsIgnoreCase("end")) {
                 final int delim_index = buffer.indexOf('\t');
                 final String key = buffer.substring(0, delim_index);
                 final String afterKey = buffer.substring(delim_index+1);
-                //final String[] tokens = afterKey.split("\t");
                 final String[] tokens = afterKey.split(" ");
-                List<Double> value = new ArrayList<>();
+                double[] value = new double[tokens.length];
+                int numValues = 0;
 
                 for (String token : tokens) {
                     if (token.isEmpty()) {
                         continue; // Skip the initial empty string
                     }
-                    value.add(Double.parseDouble(token));
+                    value[numValues++] = Double.parseDouble(token);
                 }
 
-                aggregates.get(player).put(State.fromString(key), value);
-                buffer = lines.remove(0);
+                aggregates.put(player, parseKey(key), Arrays.copyOf(value, numValues));
+                buffer = lines.next();
             }
         }
     }
 
-    private List<Double> getStrategy(int playerID, GameID infoSetID, List<S> moves)
+    // Keys are saved in hex, but older files have the State itself
+    private static long parseKey(String key)
     {
-        if (!aggregateRegrets.get(playerID).containsKey(infoSetID)) {
-            // If no historical data for this information set, make a new entry for this information set
-            aggregateRegrets.get(playerID).put(infoSetID, new ArrayList<>());
+        try {
+            return Long.parseUnsignedLong(key, 16);
+        } catch (NumberFormatException e) {
+            return State.fromString(key).infoSetKey();
         }
+    }
 
-        // Retrieve historical data for this information set
-        final List<Double> cumulativeRegrets = aggregateRegrets.get(playerID).get(infoSetID);
-
-        List<Double> strategy = new ArrayList<>();
+    // Computes the current strategy from the accumulated regrets, into the first numMoves values of strategy
+    private void getStrategy(long cumulativeRegrets, int numMoves, double[] strategy)
+    {
         double normalizingSum = 0;
 
         // Choose actions with probability in proportion to their regret
-        for (int move = 0; move < moves.size(); ++move) {
-            final double regret = Math.max(getOrZero(cumulativeRegrets, move), 0);
-            strategy.add(regret);
+        for (int move = 0; move < numMoves; ++move) {
+            final double regret = Math.max(aggregateRegrets.get(cumulativeRegrets, move), 0);
+            strategy[move] = regret;
             normalizingSum += regret;
         }
 
         // Normalize the strategy into a probability distribution
-        for (int move = 0; move < moves.size(); ++move) {
+        for (int move = 0; move < numMoves; ++move) {
             if (normalizingSum > 0) {
-                strategy.set(move, strategy.get(move) / normalizingSum);
+                strategy[move] /= normalizingSum;
             } else {
-                strategy.set(move, 1.0 / moves.size());
+                strategy[move] = 1.0 / numMoves;
             }
         }
-
-        return strategy;
-    }
-
-    private double getOrZero(List<Double> list, int index)
-    {
-        return index < list.size() ? list.get(index) : 0;
-    }
-
-    private static double sum(List<Double> toSum)
-    {
-        return toSum.stream().reduce(0.0, Double::sum);
-    }
-
-    /**
-     * Generates a new list of size numVals where all values are the given value
-     *
-     * @param val The value for all elements to be
-     * @param numVals The number of values
-     * @return The new list
-     */
-    private static <T> List<T> newList(int numVals, T val)
-    {
-        List<T> ret = new ArrayList<>();
-        for (int i = 0; i < numVals; ++i) {
-            ret.add(val);
-        }
-        return ret;
-    }
-
-    private static void multInPlace(List<Double> list, int ind, double multiplicand)
-    {
-        final double val = list.get(ind) * multiplicand;
-        list.set(ind, val);
-    }
-
-    private static void addInPlace(List<Double> list, int ind, double addend)
-    {
-        // Make sure there are zeroes in whatever might be missing from this list's size to index into it
-        // TODO Refactor so that we only add once
-        while (ind >= list.size()) {
-            list.add(0.0);
-        }
-
-        final double val = list.get(ind) + addend;
-        list.set(ind, val);
     }
 
 }
@@ -1,5 +1,25 @@
 package algorithms;
 
 public abstract class GameID {
-    public abstract boolean equals(Object o);
+
+    /**
+     * Returns a canonical 64-bit code for the information set this ID
+     * represents. Two IDs are equal exactly when their codes are equal.
+     *
+     * @return Information set code
+     */
+    public abstract long infoSetKey();
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return o != null && o.getClass() == getClass() && ((GameID) o).infoSetKey() == infoSetKey();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        // Multiply to spread the high bits, which hold the trick, into the low bits
+        return (int) ((infoSetKey() * 0x9E3779B97F4A7C15L) >>> 32);
+    }
 }
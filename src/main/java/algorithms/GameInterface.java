@@ -21,16 +21,70 @@ public interface GameInterface<S> {
      * Make the active player make a move
      *
      * @param move The move
-     * @return true if round is over, else false
+     * @return Token that can be passed to unmakeMove to undo the move
      */
-    boolean makeMove(S move);
+    long makeMove(S move);
+
+    /**
+     * Returns a small non-negative integer that identifies the move, so
+     * that search trees can store moves as ints
+     *
+     * @param move The move
+     * @return The move's ID
+     */
+    int moveId(S move);
+
+    /**
+     * Inverse of moveId
+     *
+     * @param id ID returned by moveId
+     * @return The move
+     */
+    S moveFromId(int id);
+
+    /**
+     * Undo a move made with makeMove. Moves must be undone in the
+     * reverse order to which they were made.
+     *
+     * @param undoToken The token returned by makeMove
+     */
+    void unmakeMove(long undoToken);
 
     /**
      * Computes payout of a completed game
      *
-     * @return List where i-th value is payout for i-th player
+     * @param out Array where the i-th value is set to the payout for the i-th player
+     */
+    void payout(double[] out);
+
+    /**
+     * Plays out the rest of the current round, without changing the game
+     * or allocating
+     *
+     * @param rng Random number generator for choosing moves
+     * @param scoresOut Array where the i-th value is set to the i-th player's score at the end of the round
+     * @return Number of moves played
      */
-    List<Double> payout();
+    int playout(XorShiftRandom rng, int[] scoresOut);
+
+    /**
+     * Replaces the information the observer cannot see, such as the other
+     * players' hands, with a random sample that is consistent with what the
+     * observer has seen
+     *
+     * @param observer ID of the player whose knowledge is kept
+     * @param rng Random number generator for the sample
+     */
+    void determinize(int observer, XorShiftRandom rng);
+
+    /**
+     * Returns a hash of everything that affects how the game goes on from
+     * here, so that positions reached by different orders of moves have the
+     * same hash
+     *
+     * @return The hash
+     */
+    long positionHash();
 
     /**
      * Returns a deep copy of the game
@@ -47,6 +101,16 @@ public interface GameInterface<S> {
      */
     GameID getID(int playerID);
 
+    /**
+     * Returns the key of the game's information set from the perspective
+     * of the given player. Must equal getID(playerID).infoSetKey(), but
+     * should be computed without allocating.
+     *
+     * @param playerID ID of player
+     * @return Information set key
+     */
+    long infoSetKey(int playerID);
+
     /**
      * Checks if game is over
      *
@@ -77,6 +141,14 @@ public interface GameInterface<S> {
      */
     List<S> moves();
 
+    /**
+     * Same as moves(), but replaces the contents of the given list
+     * instead of allocating a new one
+     *
+     * @param out List to fill with the possible moves for active player
+     */
+    void moves(List<S> out);
+
     /**
      * Returns a state representing the current game state
      * from the perspective of the current player
@@ -0,0 +1,325 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Information set Monte Carlo tree search (single-observer ISMCTS, as
+ * described by Cowling, Powley and Whitehouse).
+ *
+ * Unlike UCTAlgorithm, the search never looks at cards the searching player
+ * cannot see. Every iteration starts from a new determinization: the other
+ * players' hands are redealt at random, consistent with the cards played and
+ * the suits players are known to be void in. Nodes are keyed by the moves
+ * leading to them, so all determinizations share one tree, and a move's
+ * statistics are the aggregate over every determinization in which it was
+ * legal.
+ *
+ * Each thread samples its own determinizations, so sampling runs in
+ * parallel, and all threads update the one shared tree, using virtual loss
+ * to spread out.
+ */
+public class ISMCTSAlgorithm<S> {
+
+    private GameInterface<S> m_game;
+    private int m_playerID;
+
+    private int numThreads;
+    private SearchBudget budget;
+    private volatile SearchBudget.Tracker tracker; // Budget of the search in progress
+    private volatile boolean cancelled; // Set by cancel until the search it ends returns
+    private long seed;
+    private boolean seeded;
+    private SearchStats lastSearchStats;
+
+    public ISMCTSAlgorithm(GameInterface<S> game)
+    {
+        m_game = game;
+        m_playerID = game.activePlayer();
+        numThreads = 1;
+        budget = SearchBudget.DEFAULT;
+    }
+
+    /**
+     * Sets the number of threads used for each search. With one thread the
+     * search runs on the calling thread.
+     */
+    public void setNumThreads(int n) { numThreads = Math.max(1, n); }
+
+    public void setBudget(SearchBudget budget) { this.budget = budget; }
+    public SearchBudget getBudget() { return budget; }
+
+    /**
+     * Seeds the random number generators of the search threads, which
+     * determinize the game and play the rollouts
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+        seeded = true;
+    }
+
+    /**
+     * Ends the search in progress, if any, as soon as possible. May be
+     * called from any thread. If no search is running yet, the next one ends
+     * as soon as it starts, so a cancel is not lost when it races with the
+     * start of a search.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+        final SearchBudget.Tracker t = tracker;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
+    public SearchStats getLastSearchStats() { return lastSearchStats; }
+
+    private class Node {
+        private final S moveMade;
+        private final Node parent;
+        private final int player; // Player who made the move leading to this node
+        private final AtomicInteger visits, availability, virtualLoss;
+        private final AtomicLong rewardBits; // Double stored as raw bits, so it can be updated atomically
+        private final ConcurrentMap<S, Node> children;
+
+        Node(S move, Node parent, int player)
+        {
+            this.moveMade = move;
+            this.parent = parent;
+            this.player = player;
+            visits = new AtomicInteger();
+            availability = new AtomicInteger(1); // The move was available when the node was made
+            virtualLoss = new AtomicInteger();
+            rewardBits = new AtomicLong(Double.doubleToRawLongBits(0));
+            children = new ConcurrentHashMap<>();
+        }
+
+        S move() { return moveMade; }
+        Node parent() { return parent; }
+        int player() { return player; }
+        int numVisits() { return visits.get(); }
+        double getReward() { return Double.longBitsToDouble(rewardBits.get()); }
+        Node getChild(S move) { return children.get(move); }
+
+        // Visits that are in progress on other threads count as losses until they finish
+        int effectiveVisits() { return visits.get() + virtualLoss.get(); }
+
+        void incReward(double inc)
+        {
+            long prev, next;
+            do {
+                prev = rewardBits.get();
+                next = Double.doubleToRawLongBits(Double.longBitsToDouble(prev) + inc);
+            } while (!rewardBits.compareAndSet(prev, next));
+        }
+    }
+
+    /**
+     * Per-thread search state. Each worker determinizes and walks its own
+     * copy of the game, making and unmaking moves on it.
+     */
+    private class Worker implements Callable<Long> {
+        private final SearchBudget.Tracker tracker;
+        private final Node root;
+        private final GameInterface<S> searchGame;
+        private final int rootRound;
+        private final XorShiftRandom rng;
+        private final int[] scores; // Scores at the end of the last rollout
+        private final List<S> moves;
+        private long rolloutMoves;
+
+        // Undo tokens for the moves made on searchGame since the root
+        private long[] undoStack;
+        private int undoSize;
+
+        Worker(SearchBudget.Tracker tracker, int index, Node root)
+        {
+            this.tracker = tracker;
+            this.root = root;
+            searchGame = m_game.deepCopy();
+            rootRound = searchGame.roundNumber();
+            rng = seeded ? new XorShiftRandom(seed + index) : new XorShiftRandom();
+            scores = new int[searchGame.numPlayers()];
+            moves = new ArrayList<>();
+            undoStack = new long[64];
+        }
+
+        @Override
+        public Long call()
+        {
+            long playouts = 0;
+
+            while (tracker.next()) {
+                // Moves are only ever undone back to the root, so determinizing
+                // an earlier determinization is as good as determinizing the real game
+                searchGame.determinize(m_playerID, rng);
+
+                Node selectedNode = treePolicy();
+
+                if (isTerminal()) {
+                    System.arraycopy(searchGame.scores(), 0, scores, 0, scores.length);
+                } else {
+                    rolloutMoves += searchGame.playout(rng, scores);
+                }
+
+                while (undoSize > 0) {
+                    searchGame.unmakeMove(undoStack[--undoSize]);
+                }
+
+                backPropagate(selectedNode);
+                ++playouts;
+            }
+
+            return playouts;
+        }
+
+        // The search ends at the end of the round, since the next round's deal is random
+        private boolean isTerminal()
+        {
+            return searchGame.isGameOver() || searchGame.roundNumber() != rootRound;
+        }
+
+        private void play(S move)
+        {
+            if (undoSize == undoStack.length) {
+                undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+            }
+            undoStack[undoSize++] = searchGame.makeMove(move);
+        }
+
+        // Descends the tree through the moves that are legal in this
+        // determinization, and expands one untried move, if there is one
+        private Node treePolicy()
+        {
+            Node node = root;
+            node.virtualLoss.incrementAndGet();
+
+            while (!isTerminal()) {
+                searchGame.moves(moves);
+
+                // Every legal child was available this iteration. Pick an untried move at random
+                S untried = null;
+                int numUntried = 0;
+                Node best = null;
+                double max = Double.NEGATIVE_INFINITY;
+                for (S move : moves) {
+                    final Node child = node.getChild(move);
+                    if (child == null) {
+                        if (rng.nextInt(++numUntried) == 0) {
+                            untried = move;
+                        }
+                        continue;
+                    }
+                    child.availability.incrementAndGet();
+                    if (untried == null) {
+                        final double ucb = ucbValue(child);
+                        if (best == null || ucb > max) {
+                            max = ucb;
+                            best = child;
+                        }
+                    }
+                }
+
+                if (untried != null) {
+                    Node child = new Node(untried, node, searchGame.activePlayer());
+                    child.virtualLoss.incrementAndGet(); // Before publishing, so other threads never see 0 visits
+                    final Node existing = node.children.putIfAbsent(untried, child);
+                    if (existing != null) {
+                        // Another thread expanded the same move first
+                        existing.virtualLoss.incrementAndGet();
+                        existing.availability.incrementAndGet();
+                        child = existing;
+                    }
+                    play(untried);
+                    return child;
+                }
+
+                node = best;
+                node.virtualLoss.incrementAndGet();
+                play(node.move());
+            }
+
+            return node;
+        }
+
+        // Each node is rewarded from the point of view of the player who chose its move
+        private void backPropagate(Node node)
+        {
+            for (; node != null; node = node.parent()) {
+                node.visits.incrementAndGet();
+                if (node.parent() != null) {
+                    node.incReward(UCTAlgorithm.reward(scores, node.player()));
+                }
+                node.virtualLoss.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Runs the search from the game's current state
+     *
+     * @return The most visited of the active player's moves
+     */
+    public S search()
+    {
+        final Node root = new Node(null, null, -1);
+
+        final SearchBudget.Tracker t = budget.start();
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < numThreads; ++i) {
+            workers.add(new Worker(t, i, root));
+        }
+
+        final long startNanos = System.nanoTime();
+
+        // Publish the tracker before checking the flag, so either this or cancel() sees the other
+        tracker = t;
+        if (cancelled) {
+            t.cancel();
+        }
+        final long playouts;
+        try {
+            playouts = UCTAlgorithm.runWorkers(workers);
+        } finally {
+            tracker = null;
+            cancelled = false;
+        }
+
+        long rolloutMoves = 0;
+        for (Worker worker : workers) {
+            rolloutMoves += worker.rolloutMoves;
+        }
+        lastSearchStats = new SearchStats(playouts, rolloutMoves, System.nanoTime() - startNanos, numThreads);
+
+        // The searching player's own moves are the same in every determinization
+        S bestMove = null;
+        int mostVisits = -1;
+        for (S move : m_game.moves()) {
+            final Node child = root.getChild(move);
+            final int visits = child == null ? 0 : child.numVisits();
+            if (visits > mostVisits) {
+                mostVisits = visits;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    // UCB value of a node, where a move is only counted as an option in the
+    // iterations in which it was legal
+    private double ucbValue(Node node)
+    {
+        final double visits = node.effectiveVisits();
+        final double winrate = node.getReward() / visits;
+        return winrate + Math.sqrt(Math.log(node.availability.get()) / visits);
+    }
+
+}
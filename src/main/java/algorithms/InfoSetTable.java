@@ -0,0 +1,348 @@
+package algorithms;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Per-player table mapping each information set to one accumulated value
+ * per action.
+ *
+ * Information sets are identified by their 64-bit key (see
+ * GameID.infoSetKey), and kept in open-addressed tables of primitive
+ * arrays. Each set's values are a contiguous block of a double[] slab, so
+ * an entry costs its key, an offset, a length, and 8 bytes per action.
+ *
+ * Entries are found with a handle returned by find or getOrCreate, which
+ * encodes where the entry's values live. Each player's table is split into
+ * stripes, each with its own lock, which is only held while looking up or
+ * inserting a key. Values are read and updated without a lock: slab chunks
+ * never move once allocated, and add() uses compare-and-set.
+ */
+public class InfoSetTable {
+
+    public static final long NOT_FOUND = -1;
+
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private static final int STRIPE_BITS = 6, NUM_STRIPES = 1 << STRIPE_BITS;
+    private static final int CHUNK_BITS = 12, CHUNK_SIZE = 1 << CHUNK_BITS, CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16; // Per stripe, must be a power of 2
+    private static final int MAX_ACTIONS = 0xFF;
+
+    // Layout of handles: offset into the stripe's slab, number of actions, stripe, and player
+    private static final int LENGTH_SHIFT = 32, STRIPE_SHIFT = 40, PLAYER_SHIFT = 48;
+
+    private Stripe[][] stripes; // Indexed by player, then stripe
+
+    private static class Stripe {
+        private long[] keys;
+        private int[] offsets; // Offset of each entry's values in the slab, or -1 if slot is empty
+        private byte[] lengths;
+        private int size;
+
+        // The slab is allocated in chunks, so values never move when it grows
+        private volatile double[][] chunks;
+        private int slabUsed;
+
+        Stripe()
+        {
+            keys = new long[INITIAL_CAPACITY];
+            offsets = new int[INITIAL_CAPACITY];
+            lengths = new byte[INITIAL_CAPACITY];
+            Arrays.fill(offsets, -1);
+            chunks = new double[0][];
+        }
+    }
+
+    public InfoSetTable(int numPlayers)
+    {
+        stripes = new Stripe[numPlayers][NUM_STRIPES];
+        for (Stripe[] playerStripes : stripes) {
+            for (int i = 0; i < NUM_STRIPES; ++i) {
+                playerStripes[i] = new Stripe();
+            }
+        }
+    }
+
+    public int numPlayers() { return stripes.length; }
+
+    public int size(int playerID)
+    {
+        int size = 0;
+        for (Stripe stripe : stripes[playerID]) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Handle to the information set's values, or NOT_FOUND if it has none
+     */
+    public long find(int playerID, long key)
+    {
+        final long hash = mix(key);
+        final int stripeIndex = (int) (hash >>> (Long.SIZE - STRIPE_BITS));
+        final Stripe stripe = stripes[playerID][stripeIndex];
+
+        synchronized (stripe) {
+            final int slot = findSlot(stripe, key, hash);
+            if (stripe.offsets[slot] < 0) {
+                return NOT_FOUND;
+            }
+            return handle(playerID, stripeIndex, stripe.offsets[slot], stripe.lengths[slot]);
+        }
+    }
+
+    /**
+     * Returns a handle to the information set's values, creating zeroed
+     * values if it has none, or growing them if they have fewer than
+     * numActions
+     */
+    public long getOrCreate(int playerID, long key, int numActions)
+    {
+        if (numActions > MAX_ACTIONS) {
+            throw new IllegalArgumentException("Too many actions: " + numActions);
+        }
+
+        final long hash = mix(key);
+        final int stripeIndex = (int) (hash >>> (Long.SIZE - STRIPE_BITS));
+        final Stripe stripe = stripes[playerID][stripeIndex];
+
+        synchronized (stripe) {
+            int slot = findSlot(stripe, key, hash);
+            final int oldLength = stripe.offsets[slot] < 0 ? 0 : stripe.lengths[slot] & 0xFF;
+
+            if (oldLength >= numActions) {
+                return handle(playerID, stripeIndex, stripe.offsets[slot], oldLength);
+            }
+
+            if (stripe.offsets[slot] < 0) {
+                if ((stripe.size + 1) * 4 > stripe.keys.length * 3) {
+                    // Keep the load factor at most 3/4
+                    resize(stripe);
+                    slot = findSlot(stripe, key, hash);
+                }
+                stripe.keys[slot] = key;
+                ++stripe.size;
+            }
+
+            // Allocate a new block, copying over any existing values
+            final int offset = allocate(stripe, numActions);
+            if (oldLength > 0) {
+                final int oldOffset = stripe.offsets[slot];
+                System.arraycopy(stripe.chunks[oldOffset >>> CHUNK_BITS], oldOffset & CHUNK_MASK,
+                        stripe.chunks[offset >>> CHUNK_BITS], offset & CHUNK_MASK, oldLength);
+            }
+            stripe.offsets[slot] = offset;
+            stripe.lengths[slot] = (byte) numActions;
+
+            return handle(playerID, stripeIndex, offset, numActions);
+        }
+    }
+
+    /**
+     * Sets the values of an information set, e.g., when loading saved data
+     */
+    public void put(int playerID, long key, double[] values)
+    {
+        final long handle = getOrCreate(playerID, key, values.length);
+        for (int i = 0; i < values.length; ++i) {
+            VALUES.setVolatile(chunk(handle), offset(handle) + i, values[i]);
+        }
+    }
+
+    public static int numActions(long handle) { return (int) ((handle >>> LENGTH_SHIFT) & MAX_ACTIONS); }
+
+    public double get(long handle, int action)
+    {
+        return (double) VALUES.getVolatile(chunk(handle), offset(handle) + action);
+    }
+
+    /**
+     * Copies an information set's values into the start of out
+     */
+    public void get(long handle, double[] out)
+    {
+        final double[] chunk = chunk(handle);
+        final int offset = offset(handle);
+        for (int i = 0; i < numActions(handle); ++i) {
+            out[i] = (double) VALUES.getVolatile(chunk, offset + i);
+        }
+    }
+
+    /**
+     * Atomically adds to one value of an information set
+     */
+    public void add(long handle, int action, double addend)
+    {
+        final double[] chunk = chunk(handle);
+        final int index = offset(handle) + action;
+
+        double prev;
+        do {
+            prev = (double) VALUES.getVolatile(chunk, index);
+        } while (!VALUES.compareAndSet(chunk, index, prev, prev + addend));
+    }
+
+    /**
+     * Atomically adds to one value of an information set, keeping the
+     * result at least min
+     */
+    public void add(long handle, int action, double addend, double min)
+    {
+        final double[] chunk = chunk(handle);
+        final int index = offset(handle) + action;
+
+        double prev;
+        do {
+            prev = (double) VALUES.getVolatile(chunk, index);
+        } while (!VALUES.compareAndSet(chunk, index, prev, Math.max(prev + addend, min)));
+    }
+
+    /**
+     * Multiplies every positive value by positiveFactor, and every negative
+     * value by negativeFactor. Must not run at the same time as add()
+     */
+    public void scale(double positiveFactor, double negativeFactor)
+    {
+        for (Stripe[] playerStripes : stripes) {
+            for (Stripe stripe : playerStripes) {
+                synchronized (stripe) {
+                    // Unused parts of the slab are 0, so they can be scaled too
+                    for (double[] chunk : stripe.chunks) {
+                        for (int i = 0; i < chunk.length; ++i) {
+                            chunk[i] *= chunk[i] > 0 ? positiveFactor : negativeFactor;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of all of a player's information sets, in no particular order
+     */
+    public long[] keys(int playerID)
+    {
+        long[] keys = new long[0];
+        int numKeys = 0;
+
+        for (Stripe stripe : stripes[playerID]) {
+            synchronized (stripe) {
+                keys = Arrays.copyOf(keys, numKeys + stripe.size);
+                for (int slot = 0; slot < stripe.keys.length; ++slot) {
+                    if (stripe.offsets[slot] >= 0) {
+                        keys[numKeys++] = stripe.keys[slot];
+                    }
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * @return Approximate number of bytes used by the table
+     */
+    public long memoryBytes()
+    {
+        long bytes = 0;
+        for (Stripe[] playerStripes : stripes) {
+            for (Stripe stripe : playerStripes) {
+                synchronized (stripe) {
+                    bytes += (long) stripe.keys.length * (Long.BYTES + Integer.BYTES + Byte.BYTES);
+                    bytes += (long) stripe.chunks.length * CHUNK_SIZE * Double.BYTES;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public double bytesPerInfoSet()
+    {
+        long numInfoSets = 0;
+        for (int player = 0; player < numPlayers(); ++player) {
+            numInfoSets += size(player);
+        }
+        return numInfoSets == 0 ? 0 : (double) memoryBytes() / numInfoSets;
+    }
+
+    private double[] chunk(long handle)
+    {
+        final Stripe stripe = stripes[(int) (handle >>> PLAYER_SHIFT)][(int) ((handle >>> STRIPE_SHIFT) & (NUM_STRIPES - 1))];
+        return stripe.chunks[(int) handle >>> CHUNK_BITS];
+    }
+
+    // Offset within the chunk
+    private static int offset(long handle) { return (int) handle & CHUNK_MASK; }
+
+    private static long handle(int playerID, int stripeIndex, int offset, int length)
+    {
+        return ((long) playerID << PLAYER_SHIFT) | ((long) stripeIndex << STRIPE_SHIFT)
+                | ((long) (length & MAX_ACTIONS) << LENGTH_SHIFT) | (offset & 0xFFFFFFFFL);
+    }
+
+    // Returns the slot holding the key, or the empty slot where it should go
+    private static int findSlot(Stripe stripe, long key, long hash)
+    {
+        final int mask = stripe.keys.length - 1;
+        int slot = (int) hash & mask;
+        while (stripe.offsets[slot] >= 0 && stripe.keys[slot] != key) {
+            slot = (slot + 1) & mask; // Linear probing
+        }
+        return slot;
+    }
+
+    private static void resize(Stripe stripe)
+    {
+        final long[] oldKeys = stripe.keys;
+        final int[] oldOffsets = stripe.offsets;
+        final byte[] oldLengths = stripe.lengths;
+
+        stripe.keys = new long[oldKeys.length * 2];
+        stripe.offsets = new int[oldKeys.length * 2];
+        stripe.lengths = new byte[oldKeys.length * 2];
+        Arrays.fill(stripe.offsets, -1);
+
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldOffsets[i] >= 0) {
+                final int slot = findSlot(stripe, oldKeys[i], mix(oldKeys[i]));
+                stripe.keys[slot] = oldKeys[i];
+                stripe.offsets[slot] = oldOffsets[i];
+                stripe.lengths[slot] = oldLengths[i];
+            }
+        }
+    }
+
+    // Allocates space for n values in the stripe's slab. Blocks never span two chunks
+    private static int allocate(Stripe stripe, int n)
+    {
+        if ((stripe.slabUsed & CHUNK_MASK) + n > CHUNK_SIZE || stripe.slabUsed >>> CHUNK_BITS == stripe.chunks.length) {
+            if ((stripe.slabUsed & CHUNK_MASK) != 0) {
+                stripe.slabUsed = (stripe.slabUsed | CHUNK_MASK) + 1; // Skip to the start of the next chunk
+            }
+            double[][] chunks = Arrays.copyOf(stripe.chunks, stripe.chunks.length + 1);
+            chunks[chunks.length-1] = new double[CHUNK_SIZE];
+            stripe.chunks = chunks;
+        }
+
+        final int offset = stripe.slabUsed;
+        stripe.slabUsed += n;
+        return offset;
+    }
+
+    // Finalizer from MurmurHash3, which spreads keys that differ in few bits
+    private static long mix(long key)
+    {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb53a94d34ceaL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+}
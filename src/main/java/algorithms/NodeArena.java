@@ -0,0 +1,251 @@
+package algorithms;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Storage for search tree nodes, as columns of primitive arrays.
+ *
+ * A node is an int index into the columns. It has a visit count, a virtual
+ * loss count, a total reward, the index of its parent, its first child and
+ * its next sibling, the ID of the move leading to it (see
+ * GameInterface.moveId), and the number of its children that have been
+ * claimed for expansion. Nodes hold no game state: the state at a node is
+ * rebuilt by replaying the moves from the root. A node takes BYTES_PER_NODE
+ * bytes.
+ *
+ * A child can also be an alias: an edge to a node with another parent, for
+ * a position that was reached by another order of moves. An alias has a
+ * move but no statistics of its own, and node() gives the node it leads to.
+ * With aliases the nodes form a DAG, and parent is only the first parent.
+ *
+ * The columns are allocated in chunks, so nodes never move as the arena
+ * grows, and any number of threads can add and update nodes at once.
+ * Children are published with compare-and-set, after they are filled in.
+ * Clearing the arena keeps its chunks, so it can be reused by later searches.
+ */
+class NodeArena {
+
+    public static final int NONE = -1;
+    public static final int BYTES_PER_NODE = 8 * Integer.BYTES + Double.BYTES;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle DOUBLES = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private static final int CHUNK_BITS = 14, CHUNK_SIZE = 1 << CHUNK_BITS, CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static class Chunk {
+        final int[] visits = new int[CHUNK_SIZE];
+        final int[] virtualLoss = new int[CHUNK_SIZE];
+        final double[] reward = new double[CHUNK_SIZE];
+        final int[] parent = new int[CHUNK_SIZE];
+        final int[] firstChild = new int[CHUNK_SIZE];
+        final int[] nextSibling = new int[CHUNK_SIZE];
+        final int[] move = new int[CHUNK_SIZE];
+        final int[] numChildren = new int[CHUNK_SIZE];
+        final int[] target = new int[CHUNK_SIZE]; // Node an alias leads to, or NONE if not an alias
+    }
+
+    private volatile Chunk[] chunks;
+    private final AtomicInteger size;
+
+    NodeArena()
+    {
+        chunks = new Chunk[0];
+        size = new AtomicInteger();
+    }
+
+    public int size() { return size.get(); }
+
+    /**
+     * Removes every node, keeping the memory for new ones
+     */
+    public void clear() { size.set(0); }
+
+    /**
+     * Adds a node with no visits and no children
+     *
+     * @param parent Index of the parent, or NONE for a root
+     * @param move ID of the move leading to the node
+     * @return Index of the node
+     */
+    public int newNode(int parent, int move)
+    {
+        final int node = size.getAndIncrement();
+        final Chunk c = chunk(node);
+        final int i = node & CHUNK_MASK;
+        c.visits[i] = 0;
+        c.virtualLoss[i] = 0;
+        c.reward[i] = 0;
+        c.parent[i] = parent;
+        c.firstChild[i] = NONE;
+        c.nextSibling[i] = NONE;
+        c.move[i] = move;
+        c.numChildren[i] = 0;
+        c.target[i] = NONE;
+        return node;
+    }
+
+    /**
+     * Adds an alias, which is not yet linked to its parent
+     *
+     * @param parent Index of the parent
+     * @param move ID of the move leading to the target from the parent
+     * @param target Index of the node the alias leads to
+     * @return Index of the alias
+     */
+    public int newAlias(int parent, int move, int target)
+    {
+        final int alias = newNode(parent, move);
+        at(alias).target[alias & CHUNK_MASK] = target;
+        return alias;
+    }
+
+    private Chunk chunk(int node)
+    {
+        final int index = node >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+
+        synchronized (this) {
+            current = chunks;
+            if (index >= current.length) {
+                current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+            }
+            if (current[index] == null) {
+                current[index] = new Chunk();
+            }
+            chunks = current;
+            return current[index];
+        }
+    }
+
+    // Only called for nodes that have been added, so their chunk exists
+    private Chunk at(int node) { return chunks[node >>> CHUNK_BITS]; }
+
+    public int visits(int node) { return (int) INTS.getVolatile(at(node).visits, node & CHUNK_MASK); }
+    public double reward(int node) { return (double) DOUBLES.getVolatile(at(node).reward, node & CHUNK_MASK); }
+    public int parent(int node) { return at(node).parent[node & CHUNK_MASK]; }
+    public int move(int node) { return at(node).move[node & CHUNK_MASK]; }
+    public int firstChild(int node) { return (int) INTS.getAcquire(at(node).firstChild, node & CHUNK_MASK); }
+    public int nextSibling(int node) { return at(node).nextSibling[node & CHUNK_MASK]; }
+    public int numChildren(int node) { return (int) INTS.getVolatile(at(node).numChildren, node & CHUNK_MASK); }
+
+    /**
+     * @return The node a child leads to: its target if it is an alias, else the child itself
+     */
+    public int node(int child)
+    {
+        final int target = at(child).target[child & CHUNK_MASK];
+        return target == NONE ? child : target;
+    }
+
+    // Visits that are in progress on other threads count as losses until they finish
+    public int effectiveVisits(int node)
+    {
+        final Chunk c = at(node);
+        final int i = node & CHUNK_MASK;
+        return (int) INTS.getVolatile(c.visits, i) + (int) INTS.getVolatile(c.virtualLoss, i);
+    }
+
+    public void addVirtualLoss(int node) { INTS.getAndAdd(at(node).virtualLoss, node & CHUNK_MASK, 1); }
+    public void removeVirtualLoss(int node) { INTS.getAndAdd(at(node).virtualLoss, node & CHUNK_MASK, -1); }
+
+    /**
+     * Adds a visit with the given reward to the node
+     */
+    public void addVisit(int node, double reward)
+    {
+        final Chunk c = at(node);
+        final int i = node & CHUNK_MASK;
+        INTS.getAndAdd(c.visits, i, 1);
+
+        double prev;
+        do {
+            prev = (double) DOUBLES.getVolatile(c.reward, i);
+        } while (!DOUBLES.compareAndSet(c.reward, i, prev, prev + reward));
+    }
+
+    /**
+     * Claims the right to expand the node's next child, so that only one
+     * thread expands each of its moves
+     *
+     * @param expected Number of children the caller saw
+     * @return true if the caller should add child number expected
+     */
+    public boolean claimChild(int node, int expected)
+    {
+        return INTS.compareAndSet(at(node).numChildren, node & CHUNK_MASK, expected, expected + 1);
+    }
+
+    /**
+     * Publishes a filled in child to other threads, by adding it to its
+     * parent's list of children
+     */
+    public void linkChild(int parent, int child)
+    {
+        final Chunk p = at(parent), c = at(child);
+        final int pi = parent & CHUNK_MASK, ci = child & CHUNK_MASK;
+        int head;
+        do {
+            head = (int) INTS.getAcquire(p.firstChild, pi);
+            c.nextSibling[ci] = head;
+        } while (!INTS.compareAndSet(p.firstChild, pi, head, child));
+    }
+
+    /**
+     * Copies the nodes reachable from a node of another arena into this
+     * one. Must not be called while either arena is being searched.
+     *
+     * @param from The arena holding the nodes
+     * @param root Index of the node in that arena
+     * @param map Filled with the index of the copy of each node of the
+     *            other arena, or NONE if it was not copied. Must have room
+     *            for from.size() entries
+     * @return Index of the copy of the root in this arena, which has no parent
+     */
+    public int copySubtree(NodeArena from, int root, int[] map)
+    {
+        Arrays.fill(map, 0, from.size(), NONE);
+        map[root] = copyNode(from, root, NONE);
+
+        // Each copied node is visited once, in the order copied
+        int[] sources = new int[16];
+        sources[0] = root;
+        int numSources = 1;
+        for (int next = 0; next < numSources; ++next) {
+            final int source = sources[next];
+            final int copy = map[source];
+            for (int child = from.firstChild(source); child != NONE; child = from.nextSibling(child)) {
+                // A node is linked to its first parent, and reached through aliases from any others
+                final int node = from.node(child);
+                if (map[node] == NONE) {
+                    map[node] = copyNode(from, node, node == child ? copy : NONE);
+                    if (numSources == sources.length) {
+                        sources = Arrays.copyOf(sources, numSources * 2);
+                    }
+                    sources[numSources++] = node;
+                }
+                linkChild(copy, node == child ? map[node] : newAlias(copy, from.move(child), map[node]));
+            }
+        }
+
+        return map[root];
+    }
+
+    private int copyNode(NodeArena from, int source, int parent)
+    {
+        final int node = newNode(parent, from.move(source));
+        final Chunk c = at(node);
+        final int i = node & CHUNK_MASK;
+        c.visits[i] = from.visits(source);
+        c.reward[i] = from.reward(source);
+        c.numChildren[i] = from.numChildren(source);
+        return node;
+    }
+
+}
@@ -0,0 +1,162 @@
+package algorithms;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long a search may run: for a length of time, until a deadline, for
+ * a number of iterations, or until whichever of these comes first.
+ * Budgets are immutable, so one can be shared by any number of searches.
+ *
+ * Each search calls start() to get a Tracker, which all of its threads
+ * share. The tracker counts iterations exactly, so a budget of iterations
+ * alone does the same work on every run. The clock is only read every
+ * CLOCK_INTERVAL iterations, so even a deadline that has passed allows a
+ * few iterations, and the search has a move to return. A tracker can also
+ * be cancelled from any thread, which ends the search at its next iteration.
+ */
+public final class SearchBudget {
+
+    // Iterations between reads of the clock. At a few microseconds per
+    // iteration, a search overruns its time by well under a millisecond
+    private static final int CLOCK_INTERVAL = 16;
+
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    public static final SearchBudget DEFAULT = ofMillis(400);
+
+    private final long timeNanos; // Length of time from the start of the search
+    private final long deadlineNanos; // Value of System.nanoTime() by which the search must end
+    private final boolean hasDeadline;
+    private final long maxIterations;
+
+    private SearchBudget(long timeNanos, long deadlineNanos, boolean hasDeadline, long maxIterations)
+    {
+        this.timeNanos = timeNanos;
+        this.deadlineNanos = deadlineNanos;
+        this.hasDeadline = hasDeadline;
+        this.maxIterations = maxIterations;
+    }
+
+    public static SearchBudget ofMillis(long millis)
+    {
+        return new SearchBudget(millis * 1_000_000, 0, false, UNLIMITED);
+    }
+
+    public static SearchBudget ofIterations(long iterations)
+    {
+        return new SearchBudget(UNLIMITED, 0, false, Math.max(1, iterations));
+    }
+
+    /**
+     * @param nanoTime Value of System.nanoTime() by which the search must end
+     */
+    public static SearchBudget until(long nanoTime)
+    {
+        return new SearchBudget(UNLIMITED, nanoTime, true, UNLIMITED);
+    }
+
+    // Each of these returns a budget that also ends at the given limit
+
+    public SearchBudget withMillis(long millis)
+    {
+        return new SearchBudget(Math.min(timeNanos, millis * 1_000_000), deadlineNanos, hasDeadline, maxIterations);
+    }
+
+    public SearchBudget withIterations(long iterations)
+    {
+        return new SearchBudget(timeNanos, deadlineNanos, hasDeadline, Math.min(maxIterations, Math.max(1, iterations)));
+    }
+
+    public SearchBudget withDeadline(long nanoTime)
+    {
+        final boolean earlier = !hasDeadline || nanoTime - deadlineNanos < 0;
+        return new SearchBudget(timeNanos, earlier ? nanoTime : deadlineNanos, true, maxIterations);
+    }
+
+    public long getMaxIterations() { return maxIterations; }
+    public boolean isTimed() { return timeNanos != UNLIMITED || hasDeadline; }
+
+    /**
+     * Starts spending the budget
+     *
+     * @return A tracker for one search
+     */
+    public Tracker start()
+    {
+        final long now = System.nanoTime();
+        long deadline = timeNanos == UNLIMITED ? 0 : now + timeNanos;
+        boolean timed = timeNanos != UNLIMITED;
+        if (hasDeadline && (!timed || deadlineNanos - deadline < 0)) {
+            deadline = deadlineNanos;
+            timed = true;
+        }
+        return new Tracker(timed, deadline, maxIterations);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        if (timeNanos != UNLIMITED) {
+            sb.append(timeNanos / 1_000_000).append(" ms");
+        }
+        if (hasDeadline) {
+            sb.append(sb.length() == 0 ? "" : " or ").append("deadline");
+        }
+        if (maxIterations != UNLIMITED) {
+            sb.append(sb.length() == 0 ? "" : " or ").append(maxIterations).append(" iterations");
+        }
+        return sb.length() == 0 ? "unlimited" : sb.toString();
+    }
+
+    /**
+     * The budget of a search in progress, shared by all of its threads
+     */
+    public static final class Tracker {
+
+        private final boolean timed;
+        private final long deadline;
+        private final long maxIterations;
+        private final AtomicLong iterations;
+        private volatile boolean stopped, cancelled;
+
+        private Tracker(boolean timed, long deadline, long maxIterations)
+        {
+            this.timed = timed;
+            this.deadline = deadline;
+            this.maxIterations = maxIterations;
+            iterations = new AtomicLong();
+        }
+
+        /**
+         * Claims the next iteration of the search
+         *
+         * @return true if the iteration may run, false if the search must end
+         */
+        public boolean next()
+        {
+            if (stopped) {
+                return false;
+            }
+
+            final long n = iterations.incrementAndGet();
+            if (n > maxIterations || (timed && n % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline >= 0)) {
+                stopped = true;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Ends the search at its next iteration. May be called from any thread
+         */
+        public void cancel()
+        {
+            cancelled = true;
+            stopped = true;
+        }
+
+        public boolean isCancelled() { return cancelled; }
+    }
+
+}
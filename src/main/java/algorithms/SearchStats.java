@@ -0,0 +1,67 @@
+package algorithms;
+
+/**
+ * Statistics about a single search, for checking how well a search scales
+ */
+public class SearchStats {
+
+    private final long playouts;
+    private final long rolloutMoves;
+    private final long elapsedNanos;
+    private final int numThreads;
+    private final long reusedNodes; // Nodes kept from earlier searches
+    private final long tableProbes, tableHits; // Transposition table lookups, and how many found a node
+
+    public SearchStats(long playouts, long rolloutMoves, long elapsedNanos, int numThreads)
+    {
+        this(playouts, rolloutMoves, elapsedNanos, numThreads, 0);
+    }
+
+    public SearchStats(long playouts, long rolloutMoves, long elapsedNanos, int numThreads, long reusedNodes)
+    {
+        this(playouts, rolloutMoves, elapsedNanos, numThreads, reusedNodes, 0, 0);
+    }
+
+    public SearchStats(long playouts, long rolloutMoves, long elapsedNanos, int numThreads, long reusedNodes,
+                       long tableProbes, long tableHits)
+    {
+        this.playouts = playouts;
+        this.rolloutMoves = rolloutMoves;
+        this.elapsedNanos = elapsedNanos;
+        this.numThreads = numThreads;
+        this.reusedNodes = reusedNodes;
+        this.tableProbes = tableProbes;
+        this.tableHits = tableHits;
+    }
+
+    public long getPlayouts() { return playouts; }
+    public long getRolloutMoves() { return rolloutMoves; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public int getNumThreads() { return numThreads; }
+    public long getReusedNodes() { return reusedNodes; }
+    public long getTableProbes() { return tableProbes; }
+    public long getTableHits() { return tableHits; }
+
+    /**
+     * @return Fraction of transposition table lookups that found a node, or 0 if there were none
+     */
+    public double tableHitRate()
+    {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    public double playoutsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : playouts * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d playouts in %.1f ms on %d thread%s (%.0f playouts/s, %.1f rollout moves per playout, %d nodes reused)",
+                playouts, elapsedNanos / 1e6, numThreads, numThreads == 1 ? "" : "s", playoutsPerSecond(),
+                playouts == 0 ? 0 : (double) rolloutMoves / playouts, reusedNodes)
+                + (tableProbes == 0 ? "" : String.format(", transposition hit rate %.1f%%", 100 * tableHitRate()));
+    }
+
+}
@@ -0,0 +1,40 @@
+package algorithms;
+
+/**
+ * Statistics about a batch of training iterations, for comparing training modes
+ */
+public class TrainingStats {
+
+    private final long iterations;
+    private final long infoSetsTouched;
+    private final long elapsedNanos;
+
+    public TrainingStats(long iterations, long infoSetsTouched, long elapsedNanos)
+    {
+        this.iterations = iterations;
+        this.infoSetsTouched = infoSetsTouched;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getIterations() { return iterations; }
+    public long getInfoSetsTouched() { return infoSetsTouched; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double iterationsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : iterations * 1e9 / elapsedNanos;
+    }
+
+    public double infoSetsPerIteration()
+    {
+        return iterations == 0 ? 0 : (double) infoSetsTouched / iterations;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d iterations in %.1f ms (%.1f iterations/s, %.1f info sets touched per iteration)",
+                iterations, elapsedNanos / 1e6, iterationsPerSecond(), infoSetsPerIteration());
+    }
+
+}
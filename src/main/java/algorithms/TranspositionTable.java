@@ -0,0 +1,116 @@
+package algorithms;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Fixed-size table from position hashes (see GameInterface.positionHash)
+ * to search tree nodes, so a search can find a node for a position it
+ * reached by another order of moves.
+ *
+ * Slots are grouped into buckets of two. A new entry takes an empty slot
+ * of its bucket, or else replaces the entry whose node has fewer visits,
+ * so the most searched positions stay in the table however many are seen.
+ *
+ * The table is read and written by many threads without locks. Each slot
+ * stores its hash XORed with its node, so a slot that is torn by two
+ * threads writing at once does not match either hash, and reads as empty.
+ */
+class TranspositionTable {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final int BUCKET_SIZE = 2;
+
+    private final long[] checks; // Hash XOR node
+    private final int[] nodes; // Index of the node, or NodeArena.NONE if the slot is empty
+    private final int bucketMask;
+
+    /**
+     * @param log2Slots Base 2 logarithm of the number of entries the table holds
+     */
+    TranspositionTable(int log2Slots)
+    {
+        checks = new long[1 << log2Slots];
+        nodes = new int[1 << log2Slots];
+        bucketMask = (1 << log2Slots) / BUCKET_SIZE - 1;
+        clear();
+    }
+
+    public int capacity() { return nodes.length; }
+
+    public void clear() { Arrays.fill(nodes, NodeArena.NONE); }
+
+    /**
+     * @return The node for the position with the given hash, or NodeArena.NONE if there is none
+     */
+    public int get(long hash)
+    {
+        final int first = bucket(hash);
+        for (int slot = first; slot < first + BUCKET_SIZE; ++slot) {
+            final int node = (int) INTS.getAcquire(nodes, slot);
+            if (node != NodeArena.NONE && ((long) LONGS.getOpaque(checks, slot) ^ node) == hash) {
+                return node;
+            }
+        }
+        return NodeArena.NONE;
+    }
+
+    /**
+     * Adds the node for the position with the given hash, possibly replacing another
+     *
+     * @param arena Arena holding the nodes, for comparing how much they were searched
+     */
+    public void put(long hash, int node, NodeArena arena)
+    {
+        final int first = bucket(hash);
+        int victim = first;
+        int fewestVisits = Integer.MAX_VALUE;
+        for (int slot = first; slot < first + BUCKET_SIZE; ++slot) {
+            final int old = (int) INTS.getAcquire(nodes, slot);
+            if (old == NodeArena.NONE || ((long) LONGS.getOpaque(checks, slot) ^ old) == hash) {
+                victim = slot;
+                break;
+            }
+            final int visits = arena.visits(old);
+            if (visits < fewestVisits) {
+                fewestVisits = visits;
+                victim = slot;
+            }
+        }
+
+        LONGS.setOpaque(checks, victim, hash ^ node);
+        INTS.setRelease(nodes, victim, node); // After the node is filled in, and after the check
+    }
+
+    /**
+     * Updates the nodes after they are copied to another arena, removing
+     * the ones that were not copied
+     *
+     * @param map Index of the copy of each node, or NodeArena.NONE, as filled in by NodeArena.copySubtree
+     * @param mapSize Number of nodes in the map
+     */
+    public void remap(int[] map, int mapSize)
+    {
+        for (int slot = 0; slot < nodes.length; ++slot) {
+            final int old = nodes[slot];
+            if (old == NodeArena.NONE) {
+                continue;
+            }
+            final int copy = old < mapSize ? map[old] : NodeArena.NONE;
+            if (copy != NodeArena.NONE) {
+                checks[slot] = checks[slot] ^ old ^ copy;
+            }
+            nodes[slot] = copy;
+        }
+    }
+
+    private int bucket(long hash)
+    {
+        // The low bits of the hash pick the bucket
+        return ((int) hash & bucketMask) * BUCKET_SIZE;
+    }
+
+}
@@ -1,218 +1,549 @@
 package algorithms;
 
-import game.State;
-
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.*;
 
 public class UCTAlgorithm<S> {
 
-    private static final int MAX_TIME_MS = 400;
+    /**
+     * How a search with more than one thread divides its work.
+     *
+     * ROOT runs an independent tree on each thread, and merges the root's
+     * child visit counts at the end. TREE has every thread search one
+     * shared tree, using virtual loss to spread threads over different paths.
+     */
+    public enum Parallelism { ROOT, TREE }
+
+    // Shared by all searches, so threads are only created once
+    static final ExecutorService SEARCH_THREADS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "uct-search");
+        t.setDaemon(true);
+        return t;
+    });
 
     private GameInterface<S> m_game;
-    private Random rng;
     private int m_playerID;
-    private long startTime;
+
+    private int numThreads;
+    private Parallelism parallelism;
+    private SearchBudget budget;
+    private volatile SearchBudget.Tracker tracker; // Budget of the search in progress
+    private volatile boolean cancelled; // Set by cancel until the search it ends returns
+    private long seed;
+    private boolean seeded;
+    private SearchStats lastSearchStats;
+
+    // The nodes of every tree are kept in an arena. Between searches, the
+    // subtrees worth keeping are copied into the spare arena, and the two
+    // are swapped, so the memory of both is reused by every search
+    private NodeArena arena, spare;
+
+    // Roots of the trees from the last search, advanced past each move made
+    // since, and a copy of the game with the same moves made. An entry is
+    // NONE if its tree did not have a move
+    private int[] reusableRoots;
+    private GameInterface<S> reusableGame;
+    private int[] copyMap; // Where each node of the old arena was copied to
+
+    // Finds the node of a position reached by another order of moves, or null if the tree is not merged
+    private TranspositionTable transpositions;
 
     public UCTAlgorithm(GameInterface<S> game) {
         m_game = game;
         m_playerID = game.activePlayer();
-        rng = new Random();
+        numThreads = 1;
+        parallelism = Parallelism.ROOT;
+        budget = SearchBudget.DEFAULT;
+        arena = new NodeArena();
+        spare = new NodeArena();
     }
 
-    private class Node {
-        private State state;
-        private Node parent;
-        private int visits;
-        private double reward;
-        private List<Node> children;
-        private GameInterface<S> n_game;
-        private S moveMade;
-
-        public Node(State state, GameInterface<S> g, Node parent, S move) {
-            this.state = state;
-            this.moveMade = move;
-            this.parent = parent;
-            this.visits = 0;
-            this.n_game = g;
-            this.reward = 0; // TODO Should this be a list of doubles, all init'd to 0, instead?
-            this.children = new ArrayList<>();
-        }
-
-        public int numVisits() { return visits; }
-        public double getReward() { return reward; }
-        public Node parent() { return parent; }
-        public List<Node> getChildren() { return children; }
-        public Node getChildAtIndex(int i) { return children.get(i); }
-        public GameInterface<S> game() { return n_game; }
-        public boolean isGameOver() { return n_game.isGameOver(); }
-        public void addChild(Node child) { children.add(child); }
-        public S move() { return moveMade; }
-        public void incVisits() { ++visits; }
-        public void incReward(double inc) { reward += inc; }
-        public State state() { return state; }
+    /**
+     * Sets the number of threads used for each search. With one thread the
+     * search runs on the calling thread, and the parallelism is ignored.
+     */
+    public void setNumThreads(int n, Parallelism p)
+    {
+        numThreads = Math.max(1, n);
+        parallelism = p;
     }
 
-    // Runs UCT algorithm, and returns move
-    public S uct(State state)
+    public void setBudget(SearchBudget budget) { this.budget = budget; }
+    public SearchBudget getBudget() { return budget; }
+
+    /**
+     * Seeds the random number generators of the search threads. With one
+     * thread and a budget of iterations alone, seeded searches of the same
+     * state make the same tree, and return the same move.
+     */
+    public void setSeed(long seed)
     {
-        // Create root node
-        Node root = new Node(state, m_game.deepCopy(), null, null);
+        this.seed = seed;
+        seeded = true;
+    }
 
-        startTime = System.currentTimeMillis();
+    /**
+     * Ends the search in progress, if any, as soon as possible. It still
+     * returns the best move it has found. May be called from any thread.
+     * If no search is running yet, the next one ends as soon as it starts, so
+     * a cancel is not lost when it races with the start of a search.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+        final SearchBudget.Tracker t = tracker;
+        if (t != null) {
+            t.cancel();
+        }
+    }
 
-        while (timeRemaining(startTime)) {
-            // Select a node to expand
-            Node selectedNode = treePolicy(root);
+    public SearchStats getLastSearchStats() { return lastSearchStats; }
+
+    /**
+     * Enables merging positions that are reached by different orders of
+     * moves, so that their statistics are shared. The table only keeps the
+     * given number of positions, preferring the most visited. Only used if
+     * each search has a single tree, i.e., with one thread or with TREE
+     * parallelism.
+     *
+     * @param log2Entries Base 2 logarithm of the number of positions to keep, or 0 to disable merging
+     */
+    public void setTranspositionTable(int log2Entries)
+    {
+        transpositions = log2Entries > 0 ? new TranspositionTable(log2Entries) : null;
+        reusableRoots = null; // The old tree was not recorded in the table
+    }
 
-            // Determine the reward for this node
-            double reward = rollout(selectedNode);
+    /**
+     * Tells the searcher that a move was made in the game, by any player.
+     * The subtrees of the last search that start with the move are kept,
+     * so the next search can carry on from their statistics. Moves must be
+     * reported in order, from the last search on.
+     *
+     * @param move The move
+     */
+    public void advance(S move)
+    {
+        if (reusableRoots == null) {
+            return;
+        }
 
-            // Back propagate the reward
-            backPropagate(selectedNode, reward);
+        final int moveId = m_game.moveId(move);
+        boolean anyKept = false;
+        for (int i = 0; i < reusableRoots.length; ++i) {
+            int next = NodeArena.NONE;
+            if (reusableRoots[i] != NodeArena.NONE) {
+                for (int child = arena.firstChild(reusableRoots[i]); child != NodeArena.NONE; child = arena.nextSibling(child)) {
+                    if (arena.move(child) == moveId) {
+                        next = arena.node(child);
+                        break;
+                    }
+                }
+            }
+            reusableRoots[i] = next;
+            anyKept |= next != NodeArena.NONE;
         }
 
-        // Return best known action from the root
-        return bestAction(root).move();
+        if (anyKept) {
+            reusableGame.makeMove(move);
+        } else {
+            reusableRoots = null;
+            reusableGame = null;
+        }
     }
 
-    private boolean timeRemaining(long startTime)
-    {
-        return System.currentTimeMillis() - startTime <= MAX_TIME_MS;
-    }
+    /**
+     * Per-thread search state. Each worker walks its own copy of the game,
+     * making and unmaking moves on it.
+     */
+    private class Worker implements Callable<Long> {
+        private final SearchBudget.Tracker tracker;
+        private final int root;
+        private final boolean useVirtualLoss;
+        private final TranspositionTable table;
+        private final GameInterface<S> searchGame;
+        private final int rootRound;
+        private final XorShiftRandom rng;
+        private final int[] scores; // Scores at the end of the last rollout
+        private final List<S> moves;
+        private long rolloutMoves, tableProbes, tableHits;
+
+        // Undo tokens for the moves made on searchGame since the root
+        private long[] undoStack;
+        private int undoSize;
+
+        // Nodes visited since the root. With transpositions a node can have
+        // many parents, so rewards are passed back along the path taken
+        private int[] path;
+        private int pathSize;
+
+        Worker(SearchBudget.Tracker tracker, int index, int root, boolean useVirtualLoss, TranspositionTable table)
+        {
+            this.tracker = tracker;
+            this.root = root;
+            this.useVirtualLoss = useVirtualLoss;
+            this.table = table;
+            searchGame = m_game.deepCopy();
+            rootRound = searchGame.roundNumber();
+            rng = seeded ? new XorShiftRandom(seed + index) : new XorShiftRandom();
+            scores = new int[searchGame.numPlayers()];
+            moves = new ArrayList<>();
+            undoStack = new long[64];
+            path = new int[64];
+        }
 
-    // Defines the tree policy for MCTS
-    // Tree policies select a node to expand
-    private Node treePolicy(Node node)
-    {
-        GameInterface<S> gameCopy = node.game().deepCopy();
+        @Override
+        public Long call()
+        {
+            long playouts = 0;
+
+            while (tracker.next()) {
+                // Select a node to expand
+                treePolicy(root);
 
-        while (!node.isGameOver() && timeRemaining(startTime)) {
-            // Find all available moves
-            final List<S> availableMoves = new ArrayList<>(gameCopy.moves());
+                // Determine the reward for this node
+                double reward = rollout();
 
-            if (!availableMoves.isEmpty()) {
+                // Return the search game to the root state
+                while (undoSize > 0) {
+                    searchGame.unmakeMove(undoStack[--undoSize]);
+                }
 
-                // Remove a random item from the set of available moves
-                S move = removeRandomItem(availableMoves);
+                // Back propagate the reward
+                backPropagate(reward);
+                ++playouts;
+            }
 
-                // Make the move
-                gameCopy = node.game().deepCopy();
-                gameCopy.makeMove(move);
+            return playouts;
+        }
 
-                // Generate a child node, and add to node's children
-                Node child = new Node(gameCopy.getState(), gameCopy, node, move);
-                node.addChild(child);
+        // The search ends at the end of the round, since the next round's deal is random
+        private boolean isTerminal()
+        {
+            return searchGame.isGameOver() || searchGame.roundNumber() != rootRound;
+        }
+
+        // Make a move on the search game, remembering how to undo it
+        private void play(S move)
+        {
+            if (undoSize == undoStack.length) {
+                undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+            }
+            undoStack[undoSize++] = searchGame.makeMove(move);
+        }
 
-                // Return child
-                return child;
+        // Adds a node to the path, after the nodes already on it
+        private void visit(int node)
+        {
+            if (pathSize == path.length) {
+                path = Arrays.copyOf(path, pathSize * 2);
+            }
+            path[pathSize++] = node;
+            if (useVirtualLoss) {
+                arena.addVirtualLoss(node); // Before publishing a new node, so other threads never see 0 visits
+            }
+        }
 
+        // Defines the tree policy for MCTS
+        // Tree policies select a node to expand, and leave the path to it in path
+        private void treePolicy(int node)
+        {
+            pathSize = 0;
+            visit(node);
+
+            while (!isTerminal()) {
+                // Find all available moves
+                // Moves are in a deterministic order, so child number i was made by the i-th move
+                searchGame.moves(moves);
+
+                int numChildren;
+                while ((numChildren = arena.numChildren(node)) < moves.size()) {
+                    // Only the thread that claims a move expands it
+                    if (arena.claimChild(node, numChildren)) {
+                        final S move = moves.get(numChildren);
+                        final int moveId = searchGame.moveId(move);
+                        play(move);
+
+                        // If this position was reached by another order of
+                        // moves, share its node, and carry on selecting from it
+                        final long hash = table != null && !isTerminal() ? searchGame.positionHash() : 0;
+                        final int existing = table != null && !isTerminal() ? probe(hash) : NodeArena.NONE;
+                        if (existing != NodeArena.NONE) {
+                            arena.linkChild(node, arena.newAlias(node, moveId, existing));
+                            node = existing;
+                            visit(node);
+                            break;
+                        }
+
+                        final int child = arena.newNode(node, moveId);
+                        visit(child);
+                        if (table != null && !isTerminal()) {
+                            table.put(hash, child, arena);
+                        }
+                        arena.linkChild(node, child);
+                        return;
+                    }
+                }
+                if (numChildren < moves.size()) {
+                    continue; // Moved to a transposition
+                }
+
+                final int best = bestAction(node);
+                if (best == NodeArena.NONE) {
+                    // The children are still being added by other threads
+                    return;
+                }
+                node = arena.node(best);
+                visit(node);
+                play(searchGame.moveFromId(arena.move(best)));
+            }
+        }
+
+        private int probe(long hash)
+        {
+            ++tableProbes;
+            final int node = table.get(hash);
+            if (node != NodeArena.NONE) {
+                ++tableHits;
+            }
+            return node;
+        }
+
+        // Play the rest of the round from the search game's current state,
+        // and return reward
+        private int rollout()
+        {
+            if (isTerminal()) {
+                System.arraycopy(searchGame.scores(), 0, scores, 0, scores.length);
             } else {
-                node = bestAction(node);
+                // The playout does not change the search game, so there is nothing to undo
+                rolloutMoves += searchGame.playout(rng, scores);
             }
+
+            return reward(scores, m_playerID);
         }
 
-        return node;
+        // Back propagate rewards back up the path
+        private void backPropagate(double reward)
+        {
+            for (int i = pathSize - 1; i >= 0; --i) {
+                arena.addVisit(path[i], reward);
+                if (useVirtualLoss) {
+                    arena.removeVirtualLoss(path[i]);
+                }
+            }
+        }
     }
 
-    // Remove and return a random item from a list
-    private <T> T removeRandomItem(List<T> list)
+    /**
+     * Computes the reward for the given player at the end of a rollout
+     *
+     * @param scores Each player's score at the end of the rollout
+     * @param playerID ID of the player
+     * @return The reward
+     */
+    static int reward(int[] scores, int playerID)
     {
-        if (list.size() == 1) {
-            return list.remove(0);
+        // Players with the lowest score win
+        int minScore = Integer.MAX_VALUE, numWinners = 0;
+        for (int score : scores) {
+            if (score < minScore) {
+                minScore = score;
+                numWinners = 1;
+            } else if (score == minScore) {
+                ++numWinners;
+            }
         }
 
-        final int ind = rng.nextInt(list.size());
-        return list.remove(ind);
+        // Determine reward
+        if (scores[playerID] == minScore) {
+            if (numWinners == 1) {
+                return 1; // Player is only winner
+            }
+            return -1; // Player tied for winner - TODO Is it correct to return -1 if player tied?
+        }
+        return 0; // Player lost
     }
 
-    // Play game from given node, making random moves, and return
-    // reward
-    private int rollout(Node node)
+    // Runs UCT algorithm from the game's current state, and returns move
+    public S uct()
     {
-        GameInterface<S> gameCopy = node.game();
-        boolean roundOver;
+        final int threads = numThreads;
+        final boolean sharedTree = threads > 1 && parallelism == Parallelism.TREE;
+        final int numRoots = sharedTree ? 1 : threads;
+
+        // Keep the subtrees from the last search, if they are for this state,
+        // by copying them to the front of the spare arena
+        final boolean reuse = reusableRoots != null && sameState(reusableGame, m_game);
+        final TranspositionTable table = numRoots == 1 ? transpositions : null;
+        if (copyMap == null || copyMap.length < arena.size()) {
+            copyMap = new int[arena.size()];
+        }
+        spare.clear();
+        int[] roots = new int[numRoots];
+        boolean kept = false;
+        for (int i = 0; i < numRoots; ++i) {
+            if (reuse && i < reusableRoots.length && reusableRoots[i] != NodeArena.NONE) {
+                roots[i] = spare.copySubtree(arena, reusableRoots[i], copyMap);
+                kept = true;
+            } else {
+                roots[i] = spare.newNode(NodeArena.NONE, NodeArena.NONE);
+            }
+        }
+        final long reusedNodes = reuse ? spare.size() : 0;
 
-        while (!gameCopy.isGameOver() && timeRemaining(startTime)) {
-            // Find all available moves
-            List<S> moves = new ArrayList<>(gameCopy.moves());
+        // The table has to follow the nodes it kept to the new arena
+        if (table != null) {
+            if (kept) {
+                table.remap(copyMap, arena.size());
+            } else {
+                table.clear();
+            }
+        }
 
-//            if (moves.isEmpty()) {
-//                gameCopy.nextRound();
-//                continue;
-//            }
+        NodeArena swap = arena;
+        arena = spare;
+        spare = swap;
 
-            // TODO What do I do if no available moves?
+        // Create workers - sharing one root, or with one root per thread
+        final SearchBudget.Tracker t = budget.start();
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            workers.add(new Worker(t, i, roots[sharedTree ? 0 : i], sharedTree, table));
+        }
 
-            // Choose a random move to make
-            S move = removeRandomItem(moves);
+        final long startNanos = System.nanoTime();
 
-            // Make the move
-            gameCopy = gameCopy.deepCopy();
-            roundOver = gameCopy.makeMove(move);
+        // Publish the tracker before checking the flag, so either this or cancel() sees the other
+        tracker = t;
+        if (cancelled) {
+            t.cancel();
+        }
+        final long playouts;
+        try {
+            playouts = runWorkers(workers);
+        } finally {
+            tracker = null;
+            cancelled = false;
+        }
 
-            if (roundOver) {
-                break;
-            }
+        long rolloutMoves = 0, tableProbes = 0, tableHits = 0;
+        for (Worker worker : workers) {
+            rolloutMoves += worker.rolloutMoves;
+            tableProbes += worker.tableProbes;
+            tableHits += worker.tableHits;
         }
+        lastSearchStats = new SearchStats(playouts, rolloutMoves, System.nanoTime() - startNanos, threads, reusedNodes,
+                tableProbes, tableHits);
 
-        List<Integer> winningPlayers = gameCopy.winningPlayers();
+        reusableRoots = roots.clone();
+        reusableGame = m_game.deepCopy();
 
-        // Determine reward
-        if (winningPlayers.contains(m_playerID)) {
-            if (winningPlayers.size() == 1) {
-                return 1; // Player is only winner
-            }
-            return -1; // Player tied for winner - TODO Is it correct to return -1 if player tied?
+        // Return best known action from the root, or any move if the search was cancelled before it had one
+        if (numRoots == 1) {
+            final int best = bestAction(roots[0]);
+            return best == NodeArena.NONE ? m_game.moves().get(0) : m_game.moveFromId(arena.move(best));
         }
-        return 0; // Player lost
+        return mostVisitedMove(roots);
     }
 
-    // Back propagate rewards back up the tree
-    private void backPropagate(Node node, double reward)
+    // Whether the games are at the same point, as far as the search is concerned
+    private static <S> boolean sameState(GameInterface<S> a, GameInterface<S> b)
     {
-        for (; node != null; node = node.parent()) {
-            node.incVisits();
-            node.incReward(reward);
+        if (a.activePlayer() != b.activePlayer() || a.roundNumber() != b.roundNumber()) {
+            return false;
+        }
+        // Each player's key includes their hand and the trick so far
+        for (int playerID = 0; playerID < a.numPlayers(); ++playerID) {
+            if (a.infoSetKey(playerID) != b.infoSetKey(playerID)) {
+                return false;
+            }
         }
+        return true;
     }
 
-    // Find the best known action in the tree
-    private Node bestAction(Node node)
+    // Runs all workers, using the calling thread for the first one, and
+    // returns the total number of playouts
+    static long runWorkers(List<? extends Callable<Long>> workers)
     {
-        List<Node> children = node.getChildren();
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 1; i < workers.size(); ++i) {
+            futures.add(SEARCH_THREADS.submit(workers.get(i)));
+        }
 
-        if (children.isEmpty()) {
-            System.err.printf("Node %s has no children\n", node);
-            return null;
+        long playouts;
+        try {
+            playouts = workers.get(0).call();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
 
-        int playerID = m_game.activePlayer();
+        for (Future<Long> future : futures) {
+            try {
+                playouts += future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        return playouts;
+    }
 
-        // Calculate UCB value for all child nodes
-        List<Double> ucbValues = new ArrayList<>();
-        for (Node child : children) {
-            ucbValues.add(ucbValue(child, m_playerID));
+    // Merge independent trees by summing the visits of each of the root's
+    // children, and return the move with the most visits
+    private S mostVisitedMove(int[] roots)
+    {
+        Map<Integer, Long> visits = new HashMap<>();
+        for (int root : roots) {
+            for (int child = arena.firstChild(root); child != NodeArena.NONE; child = arena.nextSibling(child)) {
+                visits.merge(arena.move(child), (long) arena.visits(arena.node(child)), Long::sum);
+            }
         }
 
+        int best = NodeArena.NONE;
+        long mostVisits = -1;
+        for (Map.Entry<Integer, Long> entry : visits.entrySet()) {
+            if (entry.getValue() > mostVisits) {
+                mostVisits = entry.getValue();
+                best = entry.getKey();
+            }
+        }
+        return best == NodeArena.NONE ? m_game.moves().get(0) : m_game.moveFromId(best);
+    }
+
+    // Find the best known action in the tree, and return the child for it,
+    // which may be an alias
+    private int bestAction(int node)
+    {
         // Return child of node with highest UCB value
-        final double max = Collections.max(ucbValues);
-        final int indexOfMax = ucbValues.indexOf(max);
-        return node.getChildAtIndex(indexOfMax);
+        final double logParentVisits = Math.log(arena.effectiveVisits(node));
+        int best = NodeArena.NONE;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int child = arena.firstChild(node); child != NodeArena.NONE; child = arena.nextSibling(child)) {
+            final double ucb = ucbValue(arena.node(child), logParentVisits);
+            if (best == NodeArena.NONE || ucb > max) {
+                max = ucb;
+                best = child;
+            }
+        }
+        return best;
     }
 
     // Computes the UCB value of the given node
-    private double ucbValue(Node node, int playerID)
+    private double ucbValue(int node, double logParentVisits)
     {
         // Compute winrate
-        final double visits = node.numVisits();
-        final double winrate = node.getReward() / visits;
+        final double visits = arena.effectiveVisits(node);
+        final double winrate = arena.reward(node) / visits;
 
         // Compute the second term in the UCB formula
-        // Math.log(d) computes ln(d)
-        final double secondTerm = Math.sqrt(Math.log(node.parent().numVisits()) / visits);
+        final double secondTerm = Math.sqrt(logParentVisits / visits);
 
         // Compute and return UCB value
         return winrate + secondTerm;
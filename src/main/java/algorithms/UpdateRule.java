@@ -0,0 +1,191 @@
+package algorithms;
+
+import java.util.Objects;
+
+/**
+ * How CFR accumulates regrets and strategies.
+ *
+ * VANILLA is plain regret matching with uniform averaging. CFR_PLUS floors
+ * accumulated regrets at 0 and weights the average strategy by iteration.
+ * DISCOUNTED (DCFR) multiplies accumulated positive regrets by
+ * t^alpha / (t^alpha + 1), negative regrets by t^beta / (t^beta + 1), and
+ * strategies by (t / (t + 1))^gamma after iteration t. LINEAR is
+ * DISCOUNTED with alpha = beta = gamma = 1, which weights iteration t by t.
+ *
+ * Training runs in batches of iterations. Before a batch, the whole table
+ * is scaled by the product of the discounts of every iteration in the
+ * batch, which is what the values from earlier batches would have been
+ * multiplied by, one iteration at a time. The batch's own updates are
+ * instead weighted as they are added: an update made in iteration t is
+ * multiplied by the discounts of iterations t through the end of the
+ * batch (see the weights methods). So a value ends up weighted as if the
+ * table had been discounted after every iteration, except that the sign
+ * picking a regret's discount is that of the table at the start of the
+ * batch, or of the update itself.
+ */
+public class UpdateRule {
+
+    public enum Variant { VANILLA, CFR_PLUS, LINEAR, DISCOUNTED }
+
+    public static final UpdateRule VANILLA = new UpdateRule(Variant.VANILLA, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, 0);
+    public static final UpdateRule CFR_PLUS = new UpdateRule(Variant.CFR_PLUS, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, 1);
+    public static final UpdateRule LINEAR = new UpdateRule(Variant.LINEAR, 1, 1, 1);
+
+    // Parameters recommended by Brown and Sandholm, "Solving Imperfect-Information Games via Discounted Regret Minimization"
+    public static final UpdateRule DISCOUNTED = discounted(1.5, 0, 2);
+
+    private final Variant variant;
+    private final double alpha, beta, gamma;
+
+    private UpdateRule(Variant variant, double alpha, double beta, double gamma)
+    {
+        this.variant = variant;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+    }
+
+    public static UpdateRule discounted(double alpha, double beta, double gamma)
+    {
+        return new UpdateRule(Variant.DISCOUNTED, alpha, beta, gamma);
+    }
+
+    /**
+     * Creates a rule from its variant and parameters, as saved in a checkpoint
+     */
+    public static UpdateRule of(Variant variant, double alpha, double beta, double gamma)
+    {
+        switch (variant) {
+            case CFR_PLUS:
+                return CFR_PLUS;
+            case LINEAR:
+                return LINEAR;
+            case DISCOUNTED:
+                return discounted(alpha, beta, gamma);
+            default:
+                return VANILLA;
+        }
+    }
+
+    /**
+     * Parses a rule from a config string: "vanilla", "cfr+", "linear", "dcfr",
+     * or "dcfr:alpha,beta,gamma"
+     *
+     * @throws IllegalArgumentException If the string is not a rule
+     */
+    public static UpdateRule fromString(String str)
+    {
+        final String[] tokens = str.trim().toLowerCase().split(":");
+
+        switch (tokens[0]) {
+            case "vanilla":
+                return VANILLA;
+            case "cfr+":
+            case "cfrplus":
+                return CFR_PLUS;
+            case "linear":
+                return LINEAR;
+            case "dcfr":
+                if (tokens.length == 1) {
+                    return DISCOUNTED;
+                }
+                final String[] params = tokens[1].split(",");
+                if (params.length != 3) {
+                    throw new IllegalArgumentException("Expected dcfr:alpha,beta,gamma, got " + str);
+                }
+                return discounted(Double.parseDouble(params[0]), Double.parseDouble(params[1]), Double.parseDouble(params[2]));
+            default:
+                throw new IllegalArgumentException("Unknown update rule " + str);
+        }
+    }
+
+    public Variant getVariant() { return variant; }
+    public double getAlpha() { return alpha; }
+    public double getBeta() { return beta; }
+    public double getGamma() { return gamma; }
+
+    /**
+     * @return The lowest value an accumulated regret may have
+     */
+    public double regretFloor()
+    {
+        return variant == Variant.CFR_PLUS ? 0 : Double.NEGATIVE_INFINITY;
+    }
+
+    public boolean discounts() { return variant != Variant.VANILLA; }
+
+    // The discounts for iterations first+1 through first+n, for scaling the table before they run
+
+    public double positiveRegretDiscount(long first, int n) { return product(regretWeights(first, n, alpha)); }
+    public double negativeRegretDiscount(long first, int n) { return product(regretWeights(first, n, beta)); }
+    public double strategyDiscount(long first, int n) { return product(strategyWeights(first, n)); }
+
+    // The weights of the updates made in iterations first+1 through first+n, indexed from 0
+
+    public double[] positiveRegretWeights(long first, int n) { return regretWeights(first, n, alpha); }
+    public double[] negativeRegretWeights(long first, int n) { return regretWeights(first, n, beta); }
+
+    public double[] strategyWeights(long first, int n)
+    {
+        double[] weights = new double[n];
+        double weight = 1;
+        for (int i = n - 1; i >= 0; --i) {
+            final long t = first + 1 + i;
+            weight *= discounts() ? Math.pow((double) t / (t + 1), gamma) : 1;
+            weights[i] = weight;
+        }
+        return weights;
+    }
+
+    // The weight of an update is the product of the discounts of its iteration and every later one
+    private static double[] regretWeights(long first, int n, double exponent)
+    {
+        double[] weights = new double[n];
+        double weight = 1;
+        for (int i = n - 1; i >= 0; --i) {
+            if (exponent != Double.POSITIVE_INFINITY) {
+                final double power = Math.pow(first + 1 + i, exponent);
+                weight *= power / (power + 1);
+            }
+            weights[i] = weight;
+        }
+        return weights;
+    }
+
+    // The discount of a whole batch is the weight of its first iteration's updates
+    private static double product(double[] weights)
+    {
+        return weights.length == 0 ? 1 : weights[0];
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof UpdateRule)) {
+            return false;
+        }
+        UpdateRule other = (UpdateRule) o;
+        return variant == other.variant && Double.compare(alpha, other.alpha) == 0
+                && Double.compare(beta, other.beta) == 0 && Double.compare(gamma, other.gamma) == 0;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(variant, alpha, beta, gamma);
+    }
+
+    @Override
+    public String toString()
+    {
+        switch (variant) {
+            case CFR_PLUS:
+                return "cfr+";
+            case DISCOUNTED:
+                return String.format("dcfr:%s,%s,%s", alpha, beta, gamma);
+            default:
+                return variant.name().toLowerCase();
+        }
+    }
+
+}
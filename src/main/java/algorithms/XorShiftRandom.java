@@ -0,0 +1,51 @@
+package algorithms;
+
+/**
+ * Small, fast pseudorandom number generator (xorshift64*) for playouts.
+ * Unlike java.util.Random it is not thread-safe, so each thread should
+ * have its own.
+ */
+public class XorShiftRandom {
+
+    private long state;
+
+    public XorShiftRandom(long seed)
+    {
+        // The state must never be 0. Mix the seed, so nearby seeds give unrelated sequences
+        state = (seed ^ 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        if (state == 0) {
+            state = 0x9E3779B97F4A7C15L;
+        }
+    }
+
+    public XorShiftRandom()
+    {
+        this(System.nanoTime() ^ Thread.currentThread().getId() * 0xD1B54A32D192ED03L);
+    }
+
+    public long nextLong()
+    {
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        return state * 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * @return A random int from 0 (inclusive) to bound (exclusive)
+     */
+    public int nextInt(int bound)
+    {
+        // Multiply and shift instead of taking a remainder. The bias is negligible for small bounds
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * @return A random double from 0 (inclusive) to 1 (exclusive)
+     */
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+}
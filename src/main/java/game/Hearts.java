@@ -2,10 +2,15 @@ package game;
 
 import algorithms.*;
 import model.Card;
+import model.CardMask;
 import model.Model;
 import ui.View;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Hearts implements GameInterface<Card> {
 
@@ -23,6 +28,22 @@ public class Hearts implements GameInterface<Card> {
 
     private CFRPlayer cfrPlayer; // Single CFRPlayer instance for all CFR processing
 
+    // One UCT searcher per AI seat, kept between turns so each search can reuse the last one's tree
+    private Map<Integer, UCTAlgorithm<Card>> uctPlayers = new HashMap<>();
+
+    private HeartsPlayout.Policy playoutPolicy = HeartsPlayout.Policy.RANDOM;
+    private HeartsPlayout playout; // Created when first needed, since each copy needs its own
+
+    // AI turns of a game with a view run on this thread, so the view keeps
+    // drawing while they think. Each turn is numbered, so the result of a
+    // turn that was cancelled is ignored when it arrives
+    private ExecutorService aiExecutor;
+    private Future<?> aiTurn;
+    private volatile long aiTurnNumber; // Read on the AI thread to skip the search of a cancelled turn
+    private boolean thinking;
+    private volatile UCTAlgorithm<Card> uctSearching; // Search in progress, if any, for cancelling
+    private volatile ISMCTSAlgorithm<Card> ismctsSearching;
+
     public Hearts(View v)
     {
         this();
@@ -30,7 +51,13 @@ public class Hearts implements GameInterface<Card> {
         view.setModel(model);
 
         training = false;
-        cfrPlayer = new CFRPlayer(this);
+        cfrPlayer = new CFRPlayer(this, CFRPlayer.DEFAULT_FILENAME, true);
+
+        aiExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ai-turn");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public Hearts()
@@ -38,6 +65,15 @@ public class Hearts implements GameInterface<Card> {
         model = new Model();
     }
 
+    /**
+     * Creates a game with no view around an existing model, which the game
+     * then plays moves on. Moves are made through GameInterface.
+     */
+    public Hearts(Model model)
+    {
+        this.model = model;
+    }
+
     private Hearts(Hearts other, boolean runningAITurn) {
         view = other.view;
         training = other.training;
@@ -45,6 +81,7 @@ public class Hearts implements GameInterface<Card> {
         model = new Model(other.model);
         model.setRunningAITurn(this.runningAITurn);
         playerTypes = Arrays.copyOf(other.playerTypes, other.playerTypes.length);
+        playoutPolicy = other.playoutPolicy;
     }
 
     @Override
@@ -55,9 +92,31 @@ public class Hearts implements GameInterface<Card> {
 
     public void startGame()
     {
+        uctPlayers.clear();
         initAIPlayers();
     }
 
+    /**
+     * Abandons the game in progress, cancelling any AI turn, and deals a new one
+     */
+    public void newGame()
+    {
+        cancelAITurn();
+        uctPlayers.clear();
+        model = new Model();
+        view.setModel(model);
+        view.update();
+
+        if (isAIPlayer(model.getActivePlayer())) {
+            handleAIPlayerTurn();
+        }
+    }
+
+    /**
+     * @return true if an AI player is choosing a card in the background
+     */
+    public boolean isThinking() { return thinking; }
+
     public void setAllPlayerTypes(PlayerType playerType)
     {
         playerTypes = new PlayerType[NUM_PLAYERS];
@@ -66,8 +125,15 @@ public class Hearts implements GameInterface<Card> {
         }
     }
 
+    public void setPlayerTypes(PlayerType[] types) { playerTypes = Arrays.copyOf(types, types.length); }
+
     public void setTraining(boolean b) { training = b; }
 
+    /**
+     * Sets how moves are chosen in playouts, by this game and its copies
+     */
+    public void setPlayoutPolicy(HeartsPlayout.Policy policy) { playoutPolicy = policy; }
+
     public void handleCardClicked(int playerID, int index)
     {
         final int activePlayer = model.getActivePlayer();
@@ -127,6 +193,9 @@ public class Hearts implements GameInterface<Card> {
         boolean roundOver = false;
 
         model.setPlayed(playerID, toPlay);
+        for (UCTAlgorithm<Card> uctAlgorithm : uctPlayers.values()) {
+            uctAlgorithm.advance(toPlay);
+        }
 
 //        if (view != null && !runningAITurn) {
 //            view.update();
@@ -156,18 +225,85 @@ public class Hearts implements GameInterface<Card> {
         }
     }
 
+    /**
+     * Starts choosing the active AI player's card on the AI thread. The card
+     * is played on the UI thread when it is chosen, and meanwhile clicks on
+     * the table are ignored, so the model does not change during the search.
+     */
     private void handleAIPlayerTurn()
     {
-        if (runningAITurn) {
+        if (runningAITurn || thinking) {
             return; // Do not run an AI turn if currently running an AI turn
         }
 
         final int activePlayer = model.getActivePlayer();
+        final long turnNumber = ++aiTurnNumber;
+        thinking = true;
+
+        aiTurn = aiExecutor.submit(() -> {
+            Card toPlay;
+            try {
+                toPlay = chooseAICard(activePlayer, turnNumber);
+            } catch (RuntimeException e) {
+                System.err.printf("Player %d failed to choose a card: %s\n", activePlayer+1, e);
+                toPlay = moves().get(0);
+            }
+
+            final Card chosen = toPlay;
+            view.runLater(() -> finishAITurn(turnNumber, activePlayer, chosen));
+        });
+        view.update();
+    }
+
+    // Called on the UI thread with the card an AI player chose
+    private void finishAITurn(long turnNumber, int activePlayer, Card toPlay)
+    {
+        if (turnNumber != aiTurnNumber) {
+            return; // The turn was cancelled
+        }
+        thinking = false;
+
+        playCard(activePlayer, toPlay);
+        view.update();
+    }
+
+    /**
+     * Stops the AI turn in progress, if any, and waits for its search to end,
+     * so it is no longer reading the model
+     */
+    private void cancelAITurn()
+    {
+        ++aiTurnNumber;
+        thinking = false;
+
+        final UCTAlgorithm<Card> uct = uctSearching;
+        if (uct != null) {
+            uct.cancel();
+        }
+        final ISMCTSAlgorithm<Card> ismcts = ismctsSearching;
+        if (ismcts != null) {
+            ismcts.cancel();
+        }
+
+        if (aiTurn != null) {
+            try {
+                aiTurn.get(); // A cancelled search ends within a few iterations
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.printf("AI turn failed: %s\n", e.getCause());
+            }
+            aiTurn = null;
+        }
+    }
+
+    // Runs on the AI thread. Returns null if the turn was cancelled before its search started
+    private Card chooseAICard(int activePlayer, long turnNumber)
+    {
         final List<Card> hand = model.getHand(activePlayer);
         final Card cardLed = model.getLedCard();
         final boolean isFirstTrick = model.isFirstTrick();
         final boolean heartsBroken = model.isHeartsBroken();
-        final Card[] cardsPlayed = model.getCardsPlayed();
 
         Card toPlay = null;
 
@@ -176,11 +312,37 @@ public class Hearts implements GameInterface<Card> {
                 toPlay = DumbPlayer.chooseCard(hand, cardLed, isFirstTrick, heartsBroken);
                 break;
             case CFR_AI:
-                toPlay = cfrPlayer.chooseCard(hand, isFirstTrick, heartsBroken, cardsPlayed, activePlayer);
+                toPlay = cfrPlayer.chooseCard(activePlayer);
                 break;
             case UCT_AI:
-                UCTAlgorithm<Card> uctAlgorithm = new UCTAlgorithm<>(this);
-                toPlay = uctAlgorithm.uct(getState());
+                UCTAlgorithm<Card> uctAlgorithm = uctPlayers.computeIfAbsent(activePlayer, id -> {
+                    UCTAlgorithm<Card> searcher = new UCTAlgorithm<>(this);
+                    searcher.setNumThreads(Runtime.getRuntime().availableProcessors(), UCTAlgorithm.Parallelism.ROOT);
+                    return searcher;
+                });
+                uctSearching = uctAlgorithm;
+                try {
+                    // Checked after publishing the search, so either this sees the cancel or cancelAITurn sees the search
+                    if (turnNumber != aiTurnNumber) {
+                        return null;
+                    }
+                    toPlay = uctAlgorithm.uct();
+                } finally {
+                    uctSearching = null;
+                }
+                break;
+            case ISMCTS_AI:
+                ISMCTSAlgorithm<Card> ismcts = new ISMCTSAlgorithm<>(this);
+                ismcts.setNumThreads(Runtime.getRuntime().availableProcessors());
+                ismctsSearching = ismcts;
+                try {
+                    if (turnNumber != aiTurnNumber) {
+                        return null;
+                    }
+                    toPlay = ismcts.search();
+                } finally {
+                    ismctsSearching = null;
+                }
                 break;
             default:
                 System.err.printf("Invalid PlayerType: %s\n", playerTypes[activePlayer]);
@@ -188,12 +350,14 @@ public class Hearts implements GameInterface<Card> {
                 break;
         }
 
-        playCard(activePlayer, toPlay);
-        view.update();
+        return toPlay;
     }
 
     public void handleCenterClicked()
     {
+        if (thinking) {
+            return;
+        }
         if (model.isTrickOver()) {
             finalizeTrick();
         }
@@ -241,69 +405,68 @@ public class Hearts implements GameInterface<Card> {
 
     private boolean playerHasCardsInSuit(int playerID, int suit)
     {
-        List<Card> hand = model.getHand(playerID);
-        for (Card c : hand) {
-            if (c.getSuit() == suit) {
-                return true;
-            }
-        }
-        return false;
+        return (model.getHandMask(playerID) & CardMask.suitMask(suit)) != 0;
     }
 
     private boolean playerHasOnlyHearts(int playerID)
     {
-        List<Card> hand = model.getHand(playerID);
-        for (Card c : hand) {
-            if (c.getSuit() != Card.HEART_SUIT) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean playerHasTwelveOrMoreHearts(int playerID)
-    {
-        int numHearts = 0;
-        List<Card> hand = model.getHand(playerID);
-        for (Card c : hand) {
-            if (c.getSuit() != Card.HEART_SUIT) {
-                ++numHearts;
-            }
-        }
-        return numHearts >= 12;
+        return (model.getHandMask(playerID) & ~CardMask.HEARTS) == 0;
     }
 
     @Override
     public void beginGame()
     {
+        uctPlayers.clear();
         model = new Model();
+        model.setRunningAITurn(runningAITurn);
     }
 
+    // Moves made through GameInterface are for AI planning and training,
+    // so tricks are always finalized immediately
     @Override
-    public boolean makeMove(Card move)
+    public long makeMove(Card move)
     {
-        return playCard(model.getActivePlayer(), move);
+        return model.makeMove(move.ordinal());
     }
 
     @Override
-    public List<Double> payout()
+    public int moveId(Card move) { return move.ordinal(); }
+
+    @Override
+    public Card moveFromId(int id) { return Card.of(id); }
+
+    @Override
+    public void unmakeMove(long undoToken)
     {
-        List<Double> payout = new ArrayList<>();
-        int[] scores = model.getFinalTotalScores();
+        model.unmakeMove(undoToken);
+    }
 
-        for (int i = 0; i < scores.length; ++i) {
-            payout.add((double) scores[i]);
+    @Override
+    public void payout(double[] out)
+    {
+        for (int i = 0; i < NUM_PLAYERS; ++i) {
+            out[i] = model.getFinalTotalScore(i);
         }
+    }
 
-        // TODO Temp
-        if (payout.size() < 4) {
-            System.err.println("payout is incorrect size");
-            System.exit(1);
+    @Override
+    public int playout(XorShiftRandom rng, int[] scoresOut)
+    {
+        if (playout == null || playout.getPolicy() != playoutPolicy) {
+            playout = new HeartsPlayout(playoutPolicy);
         }
+        return playout.playout(model, rng, scoresOut);
+    }
 
-        return payout;
+    @Override
+    public void determinize(int observer, XorShiftRandom rng)
+    {
+        model.determinize(observer, rng);
     }
 
+    @Override
+    public long positionHash() { return model.zobristHash(); }
+
     @Override
     public GameInterface<Card> deepCopy()
     {
@@ -317,6 +480,12 @@ public class Hearts implements GameInterface<Card> {
         return State.fromModel(model, playerID);
     }
 
+    @Override
+    public long infoSetKey(int playerID)
+    {
+        return model.infoSetKey(playerID);
+    }
+
     @Override
     public boolean isGameOver()
     {
@@ -335,85 +504,81 @@ public class Hearts implements GameInterface<Card> {
     @Override
     public List<Card> moves()
     {
-        List<Card> cards = model.getHand(activePlayer());
-
-        if (cards.size() < 2) {
-            // If have 0 or 1 cards, all cards in hand are playable
-            return cards;
-        }
-
-        // Sort cards to ensure deterministic order
-        Collections.sort(cards);
-
         List<Card> playable = new ArrayList<>();
-
-        for (Card c : cards) {
-            if (canPlay(c)) {
-                playable.add(c);
-            }
-        }
-
+        moves(playable);
         return playable;
     }
 
     @Override
-    public State getState() {
-        return State.fromModel(model, activePlayer());
-    }
+    public void moves(List<Card> out)
+    {
+        out.clear();
 
-    @Override
-    public List<Integer> winningPlayers() {
-        return model.winningPlayers();
+        // Iterating over the mask visits cards in index order, so the order is deterministic
+        for (long m = legalMoves(); m != 0; m &= m - 1) {
+            out.add(CardMask.card(CardMask.lowest(m)));
+        }
     }
 
-    private boolean canPlay(Card c) {
+    /**
+     * @return CardMask of the cards the active player can play
+     */
+    public long legalMoves()
+    {
         final Card cardLed = model.getLedCard();
-        final int tryingToPlaySuit = c.getSuit();
+        return legalMoves(model.getHandMask(activePlayer()), cardLed == null ? -1 : cardLed.getSuit(),
+                model.isFirstTrick(), model.isHeartsBroken());
+    }
 
-        final boolean heartsBroken = model.isHeartsBroken();
-        final boolean tryingToPlayHeart = tryingToPlaySuit == Card.HEART_SUIT;
-        final boolean isFirstTrick = model.isFirstTrick();
+    /**
+     * Computes which cards in a hand can be played
+     *
+     * @param hand CardMask of the player's hand
+     * @param ledSuit Suit of the card led this trick, or -1 if the player is leading
+     * @param isFirstTrick Whether this is the first trick of the round
+     * @param heartsBroken Whether hearts have been broken
+     * @return CardMask of the cards that can be played
+     */
+    public static long legalMoves(long hand, int ledSuit, boolean isFirstTrick, boolean heartsBroken)
+    {
+        if (CardMask.size(hand) < 2) {
+            // If have 0 or 1 cards, all cards in hand are playable
+            return hand;
+        }
 
-        if (isFirstTrick && cardLed != null) {
-            if (c.getSuit() == cardLed.getSuit()) {
-                return true;
-            }
-            if (playerHasCardsInSuit(activePlayer(), cardLed.getSuit())) {
-                return false;
-            }
-            if (!c.isPointsCard()) {
-                return true;
-            }
-            if (playerHasOnlyHearts(activePlayer())) {
-                return true;
-            }
+        final long hearts = hand & CardMask.HEARTS;
+        final boolean onlyHearts = hearts == hand;
 
-            // c is a points card, so if player has 12 or more hearts
-            // (either 13 hearts or 12 hearts + queen of spades),
-            // they can technically play
-            return playerHasTwelveOrMoreHearts(activePlayer());
+        if (ledSuit < 0) {
+            // Hearts can only be led once broken, or if the player has nothing else
+            return heartsBroken || onlyHearts ? hand : hand & ~CardMask.HEARTS;
         }
 
-        if (cardLed == null) {
-            if (isFirstTrick && !c.isPointsCard()) {
-                // Technically, this isn't quite correct - it might be the
-                // that the player only has points cards in their hand
-                return true;
-            }
-            if (!tryingToPlayHeart) {
-                return true;
-            }
-            return heartsBroken || playerHasOnlyHearts(activePlayer());
+        // Must follow suit if possible
+        final long inSuit = hand & CardMask.suitMask(ledSuit);
+        if (inSuit != 0) {
+            return inSuit;
+        }
+        if (!isFirstTrick) {
+            return hand;
         }
 
-        // Card has been led
-
-        if (tryingToPlaySuit == cardLed.getSuit()) {
-            // Following suit of card led
-            return true;
+        // Points cannot be played on the first trick, unless the player has
+        // 12 or more hearts (either 13 hearts or 12 hearts + queen of spades)
+        if (onlyHearts || CardMask.size(hearts) >= 12) {
+            return hand;
         }
+        return hand & ~CardMask.POINTS;
+    }
 
-        return !playerHasCardsInSuit(activePlayer(), cardLed.getSuit());
+    @Override
+    public State getState() {
+        return State.fromModel(model, activePlayer());
+    }
+
+    @Override
+    public List<Integer> winningPlayers() {
+        return model.winningPlayers();
     }
 
 }
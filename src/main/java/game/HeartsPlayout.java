@@ -0,0 +1,124 @@
+package game;
+
+import algorithms.XorShiftRandom;
+import model.Card;
+import model.CardMask;
+import model.Model;
+
+/**
+ * Plays out the rest of a round, for UCT rollouts.
+ *
+ * The playout runs on its own copy of the hands and trick, kept in
+ * primitive fields, so it allocates nothing and leaves the model
+ * unchanged. Moves are chosen at random, or with the same preferences as
+ * DumbPlayer.
+ */
+public class HeartsPlayout {
+
+    public enum Policy { RANDOM, HEURISTIC }
+
+    private final Policy policy;
+    private final long[] hands;
+    private final int[] points; // Points taken this round
+
+    public HeartsPlayout(Policy policy)
+    {
+        this.policy = policy;
+        hands = new long[Hearts.NUM_PLAYERS];
+        points = new int[Hearts.NUM_PLAYERS];
+    }
+
+    public Policy getPolicy() { return policy; }
+
+    /**
+     * Plays the rest of the model's round
+     *
+     * @param scoresOut Array where the i-th value is set to the i-th player's total score at the end of the round
+     * @return Number of cards played
+     */
+    public int playout(Model model, XorShiftRandom rng, int[] scoresOut)
+    {
+        final int numPlayers = hands.length;
+        for (int i = 0; i < numPlayers; ++i) {
+            hands[i] = model.getHandMask(i);
+            points[i] = model.getCurrentScoresForThisRound()[i];
+        }
+
+        boolean heartsBroken = model.isHeartsBroken();
+        int trickNumber = model.getTrickNumber();
+        int player = model.getActivePlayer();
+
+        // Summarize the trick so far, in order of play
+        int trickSize = 0, ledSuit = -1, high = CardMask.NO_CARD, winner = -1, trickPoints = 0;
+        for (int i = 0; i < model.getTrickSize(); ++i) {
+            final int seat = (model.getLeader() + i) % numPlayers;
+            final int card = model.getTrickCard(seat);
+            if (trickSize++ == 0) {
+                ledSuit = CardMask.suit(card);
+            }
+            if (CardMask.suit(card) == ledSuit && card > high) {
+                high = card;
+                winner = seat;
+            }
+            trickPoints += cardPoints(card);
+            player = (seat + 1) % numPlayers;
+        }
+
+        int numMoves = 0;
+        while (trickNumber <= Hearts.CARDS_PER_PLAYER) {
+            if (trickSize == numPlayers) {
+                // The trick is complete, so the winner takes its points and leads the next one
+                points[winner] += trickPoints;
+                player = winner;
+                trickSize = 0;
+                ledSuit = -1;
+                high = CardMask.NO_CARD;
+                trickPoints = 0;
+                ++trickNumber;
+                continue;
+            }
+
+            final long legal = Hearts.legalMoves(hands[player], ledSuit, trickNumber == 1, heartsBroken);
+            final int card = policy == Policy.RANDOM
+                    ? CardMask.select(legal, rng.nextInt(CardMask.size(legal)))
+                    : heuristicMove(legal, trickNumber == 1);
+
+            hands[player] &= ~CardMask.bit(card);
+            heartsBroken |= CardMask.suit(card) == Card.HEART_SUIT;
+            if (trickSize++ == 0) {
+                ledSuit = CardMask.suit(card);
+            }
+            if (CardMask.suit(card) == ledSuit && card > high) {
+                // Card indices within a suit are ordered by value
+                high = card;
+                winner = player;
+            }
+            trickPoints += cardPoints(card);
+
+            player = (player + 1) % numPlayers;
+            ++numMoves;
+        }
+
+        for (int i = 0; i < numPlayers; ++i) {
+            scoresOut[i] = model.getFinalTotalScore(i) + points[i];
+        }
+        return numMoves;
+    }
+
+    // Like DumbPlayer, plays the lowest legal card, avoiding hearts, and the queen of spades on the first trick
+    private static int heuristicMove(long legal, boolean isFirstTrick)
+    {
+        final long avoid = CardMask.HEARTS | (isFirstTrick ? CardMask.bit(CardMask.QUEEN_OF_SPADES) : 0);
+        final long preferred = legal & ~avoid;
+        return CardMask.lowest(preferred != 0 ? preferred : legal);
+    }
+
+    private static int cardPoints(int card)
+    {
+        if (CardMask.suit(card) == Card.HEART_SUIT) {
+            return 1;
+        }
+        return card == CardMask.QUEEN_OF_SPADES ? Hearts.QUEEN_OF_SPADES_SCORE : 0;
+    }
+
+}
@@ -2,6 +2,6 @@ package game;
 
 public enum PlayerType {
 
-    HUMAN, CFR_AI, UCT_AI, DUMB_AI
+    HUMAN, CFR_AI, UCT_AI, ISMCTS_AI, DUMB_AI
 
 }
@@ -2,6 +2,7 @@ package game;
 
 import algorithms.GameID;
 import model.Card;
+import model.CardMask;
 import model.Model;
 
 import java.util.*;
@@ -9,16 +10,27 @@ import java.util.stream.Collectors;
 
 public class State extends GameID {
 
-//    private int[] playerScores;
-    private List<Card> hand;
+    // Layout of info set keys. The hand takes the low 52 bits. The trick is
+    // summarized by what matters to the player about to play: how many cards
+    // are in it, and, once a card has been led, the led suit, the highest
+    // value of the led suit played so far, and the points in the trick
+    private static final int FIRST_TRICK_SHIFT = 52, TRICK_SIZE_SHIFT = 53;
+    private static final int LED_SUIT_SHIFT = 55, HIGH_VALUE_SHIFT = 57, QUEEN_SHIFT = 61, HEARTS_SHIFT = 62;
+    private static final int HEARTS_BROKEN_SHIFT = 55; // Only used when leading, in place of the led suit
+
+    // Equality and hashing only use the key. The cards are kept for toString
+    private long key;
+    private long hand;
     private Card[] played; // Cards played this trick
-    private boolean isFirstTrick;
+    private boolean isFirstTrick, heartsBroken;
 
-    public State(List<Card> hand, Card[] played, boolean isFirstTrick)
+    public State(List<Card> hand, Card[] played, boolean isFirstTrick, boolean heartsBroken)
     {
-        this.hand = hand; // TODO Do I need to make deep copies of the incoming collections?
-        this.played = played;
+        this.hand = CardMask.of(hand);
+        this.played = played.clone();
         this.isFirstTrick = isFirstTrick;
+        this.heartsBroken = heartsBroken;
+        key = keyFromCards();
     }
 
     // Instances of this class can only be created through public static methods
@@ -28,52 +40,81 @@ public class State extends GameID {
     }
 
     @Override
-    public boolean equals(Object o)
+    public long infoSetKey() { return key; }
+
+    /**
+     * Packs an information set into a 64-bit key
+     *
+     * @param hand CardMask of the player's hand
+     * @param trickSize Number of cards played this trick
+     * @param highCard Index of the highest card of the led suit played this trick, if trickSize is not 0
+     * @param numHearts Number of hearts played this trick
+     * @param hasQueen Whether the queen of spades was played this trick
+     * @param isFirstTrick Whether this is the first trick of the round
+     * @param heartsBroken Whether hearts have been broken
+     * @return The key
+     */
+    public static long packKey(long hand, int trickSize, int highCard, int numHearts, boolean hasQueen,
+                               boolean isFirstTrick, boolean heartsBroken)
     {
-        if (!(o instanceof State)) {
-            return false;
-        }
+        final long key = hand | (isFirstTrick ? 1L << FIRST_TRICK_SHIFT : 0) | ((long) Math.min(trickSize, 3) << TRICK_SIZE_SHIFT);
 
-        final State other = (State)o;
+        if (trickSize == 0) {
+            return key | (heartsBroken ? 1L << HEARTS_BROKEN_SHIFT : 0);
+        }
 
-        return isFirstTrick == other.isFirstTrick &&
-                played.length == other.played.length &&
-                hand.size() == other.hand.size() &&
-                playedEqual(played, other.played) && handsEqual(hand, other.hand);
+        // The highest card of the led suit is always of the led suit
+        return key | ((long) CardMask.suit(highCard) << LED_SUIT_SHIFT)
+                | ((long) (CardMask.value(highCard) - 2) << HIGH_VALUE_SHIFT)
+                | (hasQueen ? 1L << QUEEN_SHIFT : 0)
+                | ((long) Math.min(numHearts, 3) << HEARTS_SHIFT);
     }
 
-    @Override
-    public int hashCode()
+    // Computes the key from the cards, for states that are not made from a model
+    private long keyFromCards()
     {
-        final Set<Card> playedMinusNulls = Arrays.stream(played)
-                .filter(Objects::isNull).collect(Collectors.toSet());
+        final int numSeats = played.length;
+        int trickSize = 0, leader = 0;
+
+        for (int i = 0; i < numSeats; ++i) {
+            if (played[i] != null) {
+                ++trickSize;
+                // Cards are played in seat order, so the leader is the player after an empty seat
+                if (played[(i + numSeats - 1) % numSeats] == null) {
+                    leader = i;
+                }
+            }
+        }
 
-        int result = new HashSet<>(hand).hashCode();
-        result = 31 * result + playedMinusNulls.hashCode();
-        result = 31 * result + (isFirstTrick ? 1 : 0);
-        return result;
-    }
+        if (trickSize == 0) {
+            return packKey(hand, 0, CardMask.NO_CARD, 0, false, isFirstTrick, heartsBroken);
+        }
 
-    private boolean playedEqual(Card[] played1, Card[] played2)
-    {
-        Set<Card> played1Set = Arrays.stream(played1)
-                .filter(Objects::isNull).collect(Collectors.toSet());
-        Set<Card> played2Set = Arrays.stream(played2)
-                .filter(Objects::isNull).collect(Collectors.toSet());
-        return played1Set.equals(played2Set);
-    }
+        int highCard = played[leader].ordinal(), numHearts = 0;
+        boolean hasQueen = false;
 
-    private boolean handsEqual(final List<Card> hand1, final List<Card> hand2)
-    {
-        Set<Card> hand1Set = new HashSet<>(hand1);
-        Set<Card> hand2Set = new HashSet<>(hand2);
-        return hand1Set.equals(hand2Set);
+        for (Card c : played) {
+            if (c == null) {
+                continue;
+            }
+            final int card = c.ordinal();
+            if (CardMask.suit(card) == CardMask.suit(highCard) && card > highCard) {
+                highCard = card;
+            }
+            if (c.getSuit() == Card.HEART_SUIT) {
+                ++numHearts;
+            }
+            hasQueen |= card == CardMask.QUEEN_OF_SPADES;
+        }
+
+        return packKey(hand, trickSize, highCard, numHearts, hasQueen, isFirstTrick, heartsBroken);
     }
 
     @Override
     public String toString()
     {
-        return String.format("%s_%s_%s", toStringNoSpaces(hand), toStringNoSpaces(played), Boolean.toString(isFirstTrick));
+        return String.format("%s_%s_%s_%s", toStringNoSpaces(CardMask.toList(hand)), toStringNoSpaces(played),
+                Boolean.toString(isFirstTrick), Boolean.toString(heartsBroken));
     }
 
     private static <T> String toStringNoSpaces(Collection<T> c)
@@ -110,9 +151,11 @@ public class State extends GameID {
         final String delim = "_";
         final String[] tokens = str.split(delim);
 
-        state.hand = parseCardCollection(tokens[0]);
+        state.hand = CardMask.of(parseCardCollection(tokens[0]));
         state.played = parseCardArray(tokens[1]);
         state.isFirstTrick = Boolean.parseBoolean(tokens[2]);
+        state.heartsBroken = tokens.length > 3 && Boolean.parseBoolean(tokens[3]); // Older strings do not have this
+        state.key = state.keyFromCards();
 
         return (T) state;
     }
@@ -139,14 +182,14 @@ public class State extends GameID {
     {
         State state = new State();
 
-        //state.playerScores = m.getCurrentScoresForThisRound().clone();
-
         for (int i = 0; i < state.played.length; ++i) {
             state.played[i] = m.getPlayedCard(i);
         }
 
-        state.hand = new ArrayList<>(m.getHand(playerID));
+        state.hand = m.getHandMask(playerID);
         state.isFirstTrick = m.isFirstTrick();
+        state.heartsBroken = m.isHeartsBroken();
+        state.key = m.infoSetKey(playerID);
 
         return (T) state;
     }
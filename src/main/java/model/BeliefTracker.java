@@ -0,0 +1,270 @@
+package model;
+
+import algorithms.XorShiftRandom;
+
+/**
+ * Public knowledge about the hidden cards of a round: which cards have not
+ * been played yet, and which suits each player has shown to be void in by
+ * failing to follow suit. From these it keeps, for each player, the mask of
+ * cards that player could still be holding, as everyone else sees it.
+ *
+ * Model keeps a tracker up to date as cards are played, so sampling the
+ * hidden hands never has to replay the round.
+ */
+public class BeliefTracker {
+
+    private final int numPlayers;
+    private long unplayed;
+    private int voids; // Bit (playerID * 4 + suit) is set if the player is void in the suit
+    private long[] possible; // Cards each player could be holding
+
+    // Scratch space for sample. Not copied, since copies are usually used by other threads
+    private int[] deck, needed, slack;
+
+    // affectedGroups[holders * numPlayers + playerID] is the set of groups of
+    // players (as a bitmask of group masks) that lose a spare card if a card
+    // that the holders could hold is given to the player
+    private final int[] affectedGroups;
+
+    public BeliefTracker(int numPlayers)
+    {
+        this.numPlayers = numPlayers;
+        possible = new long[numPlayers];
+        affectedGroups = affectedGroups(numPlayers);
+        reset();
+    }
+
+    public BeliefTracker(BeliefTracker other)
+    {
+        numPlayers = other.numPlayers;
+        unplayed = other.unplayed;
+        voids = other.voids;
+        possible = other.possible.clone();
+        affectedGroups = other.affectedGroups; // Never modified
+    }
+
+    // Giving a card to a player only uses up a spare card of the groups that
+    // could hold it but do not include the player
+    private static int[] affectedGroups(int numPlayers)
+    {
+        final int numGroups = 1 << numPlayers;
+        int[] affected = new int[numGroups * numPlayers];
+        for (int holders = 0; holders < numGroups; ++holders) {
+            for (int playerID = 0; playerID < numPlayers; ++playerID) {
+                for (int group = 1; group < numGroups; ++group) {
+                    if ((group & holders) != 0 && (group & (1 << playerID)) == 0) {
+                        affected[holders * numPlayers + playerID] |= 1 << group;
+                    }
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Forgets everything, as at the start of a round
+     */
+    public void reset()
+    {
+        unplayed = CardMask.ALL;
+        voids = 0;
+        for (int playerID = 0; playerID < numPlayers; ++playerID) {
+            possible[playerID] = CardMask.ALL;
+        }
+    }
+
+    /**
+     * Updates the beliefs after a card is played
+     *
+     * @param playerID ID of the player who played the card
+     * @param card Index of the card
+     * @param ledSuit Suit led this trick, or -1 if the card was led
+     */
+    public void cardPlayed(int playerID, int card, int ledSuit)
+    {
+        final long bit = CardMask.bit(card);
+        unplayed &= ~bit;
+        for (int i = 0; i < numPlayers; ++i) {
+            possible[i] &= ~bit;
+        }
+
+        if (ledSuit >= 0 && CardMask.suit(card) != ledSuit) {
+            voids |= voidBit(playerID, ledSuit);
+            possible[playerID] &= ~CardMask.suitMask(ledSuit);
+        }
+    }
+
+    /**
+     * Sets the beliefs directly, e.g. when a move is undone
+     *
+     * @param playedMask CardMask of the cards played this round
+     * @param voids Void flags, as returned by getVoids
+     */
+    public void restore(long playedMask, int voids)
+    {
+        unplayed = CardMask.ALL & ~playedMask;
+        this.voids = voids;
+        for (int playerID = 0; playerID < numPlayers; ++playerID) {
+            long mask = unplayed;
+            for (int suit = 0; suit < Card.NUM_SUITS; ++suit) {
+                if (isVoid(playerID, suit)) {
+                    mask &= ~CardMask.suitMask(suit);
+                }
+            }
+            possible[playerID] = mask;
+        }
+    }
+
+    public int getVoids() { return voids; }
+    public long getUnplayed() { return unplayed; }
+    public boolean isVoid(int playerID, int suit) { return (voids & voidBit(playerID, suit)) != 0; }
+
+    /**
+     * @return CardMask of the cards the player could be holding, judging only by public information
+     */
+    public long possibleCards(int playerID) { return possible[playerID]; }
+
+    private static int voidBit(int playerID, int suit) { return 1 << (playerID * Card.NUM_SUITS + suit); }
+
+    /**
+     * Deals the cards the observer has not seen to the other players, at
+     * random. Each player is dealt as many cards as they hold now, and only
+     * cards they could be holding, so the result is a deal the observer
+     * cannot rule out.
+     *
+     * Cards are dealt one at a time, each to a player who could hold it,
+     * with odds in proportion to how many cards they still need. Before
+     * each card is given, Hall's condition is checked for every group of
+     * players: they must still be able to fill their hands. So the deal
+     * never gets stuck, and never has to start over. Each group's spare
+     * cards are kept up to date as cards are dealt, and the groups with none
+     * to spare are kept as a bitmask, so a check is a single AND. Without
+     * voids the deal is uniform; with voids it is close to uniform.
+     *
+     * @param observer Player whose hand is kept
+     * @param hands Each player's CardMask, replaced for every player but the observer
+     * @param rng Random number generator for the deal
+     */
+    public void sample(int observer, long[] hands, XorShiftRandom rng)
+    {
+        final long unseen = unplayed & ~hands[observer];
+        final int numGroups = 1 << numPlayers;
+
+        if (deck == null) {
+            deck = new int[CardMask.NUM_CARDS];
+            needed = new int[numPlayers];
+            slack = new int[numGroups];
+        }
+
+        // Hand sizes, and whether any player's void matters
+        boolean unconstrained = true;
+        for (int playerID = 0; playerID < numPlayers; ++playerID) {
+            if (playerID == observer) {
+                needed[playerID] = 0;
+            } else {
+                needed[playerID] = CardMask.size(hands[playerID]);
+                unconstrained &= (possible[playerID] & unseen) == unseen;
+            }
+        }
+
+        final int numUnseen = shuffle(unseen, rng);
+
+        if (unconstrained) {
+            // Any split of a shuffled deck is a uniform deal
+            int next = 0;
+            for (int playerID = 0; playerID < numPlayers; ++playerID) {
+                if (playerID == observer) {
+                    continue;
+                }
+                long hand = 0;
+                for (int i = 0; i < needed[playerID]; ++i) {
+                    hand |= CardMask.bit(deck[next++]);
+                }
+                hands[playerID] = hand;
+            }
+            return;
+        }
+
+        // slack[g] = (cards some player in group g could hold) - (cards the group still needs)
+        int tight = 0; // Groups with no cards to spare
+        for (int group = 1; group < numGroups; ++group) {
+            long groupCards = 0;
+            int groupNeeded = 0;
+            for (int playerID = 0; playerID < numPlayers; ++playerID) {
+                if ((group & (1 << playerID)) != 0 && playerID != observer) {
+                    groupCards |= possible[playerID] & unseen;
+                    groupNeeded += needed[playerID];
+                }
+            }
+            slack[group] = CardMask.size(groupCards) - groupNeeded;
+            if (slack[group] < 1) {
+                tight |= 1 << group;
+            }
+        }
+
+        for (int playerID = 0; playerID < numPlayers; ++playerID) {
+            if (playerID != observer) {
+                hands[playerID] = 0;
+            }
+        }
+
+        for (int i = 0; i < numUnseen; ++i) {
+            final int card = deck[i];
+            final long bit = CardMask.bit(card);
+
+            // Players who could hold the card
+            int holders = 0;
+            for (int playerID = 0; playerID < numPlayers; ++playerID) {
+                if (playerID != observer && (possible[playerID] & bit) != 0) {
+                    holders |= 1 << playerID;
+                }
+            }
+
+            // Only deal to players that still need cards, and that leave every group able to fill its hands
+            int candidates = 0, totalNeeded = 0;
+            for (int playerID = 0; playerID < numPlayers; ++playerID) {
+                if ((holders & (1 << playerID)) != 0 && needed[playerID] > 0
+                        && (affectedGroups[holders * numPlayers + playerID] & tight) == 0) {
+                    candidates |= 1 << playerID;
+                    totalNeeded += needed[playerID];
+                }
+            }
+
+            int pick = rng.nextInt(totalNeeded);
+            int chosen = 0;
+            for (int playerID = 0; playerID < numPlayers; ++playerID) {
+                if ((candidates & (1 << playerID)) != 0) {
+                    pick -= needed[playerID];
+                    if (pick < 0) {
+                        chosen = playerID;
+                        break;
+                    }
+                }
+            }
+
+            hands[chosen] |= bit;
+            --needed[chosen];
+            for (int groups = affectedGroups[holders * numPlayers + chosen]; groups != 0; groups &= groups - 1) {
+                final int group = Integer.numberOfTrailingZeros(groups);
+                if (--slack[group] < 1) {
+                    tight |= 1 << group;
+                }
+            }
+        }
+    }
+
+    // Puts the cards of the mask into deck in random order, and returns how many there are
+    private int shuffle(long mask, XorShiftRandom rng)
+    {
+        int n = 0;
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            // Inside-out Fisher-Yates shuffle
+            final int j = rng.nextInt(n + 1);
+            deck[n] = deck[j];
+            deck[j] = Long.numberOfTrailingZeros(rest);
+            ++n;
+        }
+        return n;
+    }
+
+}
@@ -1,27 +1,62 @@
 package model;
 
-public class Card implements Comparable<Card> {
+/**
+ * A playing card. There is exactly one instance of each of the 52 cards,
+ * obtained with of() or fromString(), so cards can be compared with ==.
+ */
+public final class Card implements Comparable<Card> {
 
     public static final int CLUB_SUIT = 0, DIAMOND_SUIT = 1, HEART_SUIT = 2, SPADE_SUIT = 3;
     public static final int JACK_VAL = 11, QUEEN_VAL = 12, KING_VAL = 13, ACE_VAL = 14;
 
-    private int suit, value;
+    public static final int NUM_SUITS = 4, CARDS_PER_SUIT = 13, NUM_CARDS = NUM_SUITS * CARDS_PER_SUIT;
 
-    public Card(int s, int v)
+    // Indexed by ordinal
+    private static final Card[] CARDS = new Card[NUM_CARDS];
+    static {
+        for (int i = 0; i < NUM_CARDS; ++i) {
+            CARDS[i] = new Card(i / CARDS_PER_SUIT, i % CARDS_PER_SUIT + 2);
+        }
+    }
+
+    private final int suit, value;
+    private final int ordinal;
+    private final String name;
+
+    private Card(int s, int v)
     {
         suit = s;
         value = v;
+        ordinal = s * CARDS_PER_SUIT + v - 2;
+        name = makeName();
     }
 
-    public Card(Card other)
+    /**
+     * Returns the card with the given suit and value
+     *
+     * @throws IllegalArgumentException If there is no such card
+     */
+    public static Card of(int suit, int value)
     {
-        suit = other.suit;
-        value = other.value;
+        if (suit < CLUB_SUIT || suit > SPADE_SUIT || value < 2 || value > ACE_VAL) {
+            throw new IllegalArgumentException(String.format("No card with suit %d and value %d", suit, value));
+        }
+        return CARDS[suit * CARDS_PER_SUIT + value - 2];
     }
 
+    /**
+     * Returns the card with the given ordinal, from 0 to 51
+     */
+    public static Card of(int ordinal) { return CARDS[ordinal]; }
+
     public int getSuit() { return suit; }
     public int getValue() { return value; }
 
+    /**
+     * @return Index of the card from 0 to 51, ordered by suit and then by value
+     */
+    public int ordinal() { return ordinal; }
+
     public boolean isPointsCard()
     {
         return suit == HEART_SUIT || (value == QUEEN_VAL && suit == SPADE_SUIT);
@@ -30,22 +65,22 @@ public class Card implements Comparable<Card> {
     @Override
     public int hashCode()
     {
-        return suit * ACE_VAL + value; // Ace is largest value
+        return ordinal;
     }
 
     @Override
     public boolean equals(Object o)
     {
-        if (!(o instanceof Card)) {
-            return false;
-        }
-
-        final Card other = (Card) o;
-        return suit == other.suit && value == other.value;
+        return this == o; // There is only one instance of each card
     }
 
     @Override
     public String toString()
+    {
+        return name;
+    }
+
+    private String makeName()
     {
         String suitStr;
         switch (suit) {
@@ -88,22 +123,22 @@ public class Card implements Comparable<Card> {
 
         if (valChar == '1') {
             // This is a ten
-            return new Card(suit, 10);
+            return of(suit, 10);
         }
 
         switch (valChar) {
-            case '2': return new Card(suit, 2);
-            case '3': return new Card(suit, 3);
-            case '4': return new Card(suit, 4);
-            case '5': return new Card(suit, 5);
-            case '6': return new Card(suit, 6);
-            case '7': return new Card(suit, 7);
-            case '8': return new Card(suit, 8);
-            case '9': return new Card(suit, 9);
-            case 'J': return new Card(suit, JACK_VAL);
-            case 'Q': return new Card(suit, QUEEN_VAL);
-            case 'K': return new Card(suit, KING_VAL);
-            case 'A': return new Card(suit, ACE_VAL);
+            case '2': return of(suit, 2);
+            case '3': return of(suit, 3);
+            case '4': return of(suit, 4);
+            case '5': return of(suit, 5);
+            case '6': return of(suit, 6);
+            case '7': return of(suit, 7);
+            case '8': return of(suit, 8);
+            case '9': return of(suit, 9);
+            case 'J': return of(suit, JACK_VAL);
+            case 'Q': return of(suit, QUEEN_VAL);
+            case 'K': return of(suit, KING_VAL);
+            case 'A': return of(suit, ACE_VAL);
             default: return null;
         }
     }
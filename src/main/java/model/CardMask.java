@@ -0,0 +1,78 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for working with sets of cards packed into a 52-bit long.
+ *
+ * Bit i of a mask is set if the card with index i is in the set, where
+ * index = Card.ordinal() = suit * 13 + (value - 2). Cards of one suit
+ * therefore occupy 13 consecutive bits, ordered from 2 up to ace.
+ */
+public class CardMask {
+
+    public static final int NUM_CARDS = Card.NUM_CARDS, CARDS_PER_SUIT = Card.CARDS_PER_SUIT;
+    public static final int NO_CARD = -1;
+
+    public static final long CLUBS = suitMask(Card.CLUB_SUIT);
+    public static final long DIAMONDS = suitMask(Card.DIAMOND_SUIT);
+    public static final long HEARTS = suitMask(Card.HEART_SUIT);
+    public static final long SPADES = suitMask(Card.SPADE_SUIT);
+    public static final long ALL = (1L << NUM_CARDS) - 1;
+
+    public static final int TWO_OF_CLUBS = index(Card.CLUB_SUIT, 2);
+    public static final int QUEEN_OF_SPADES = index(Card.SPADE_SUIT, Card.QUEEN_VAL);
+    public static final long POINTS = HEARTS | (1L << QUEEN_OF_SPADES);
+
+    // Prevent creating instances of this class
+    private CardMask() {}
+
+    public static long suitMask(int suit) { return ((1L << CARDS_PER_SUIT) - 1) << (suit * CARDS_PER_SUIT); }
+
+    public static int index(int suit, int value) { return suit * CARDS_PER_SUIT + value - 2; }
+    public static int index(Card c) { return c.ordinal(); }
+    public static int suit(int index) { return index / CARDS_PER_SUIT; }
+    public static int value(int index) { return index % CARDS_PER_SUIT + 2; }
+    public static long bit(int index) { return 1L << index; }
+    public static long bit(Card c) { return 1L << c.ordinal(); }
+
+    public static Card card(int index) { return index == NO_CARD ? null : Card.of(index); }
+
+    public static boolean contains(long mask, int index) { return (mask & (1L << index)) != 0; }
+    public static int size(long mask) { return Long.bitCount(mask); }
+    public static int lowest(long mask) { return Long.numberOfTrailingZeros(mask); }
+
+    /**
+     * Returns the index of the n-th (0-based) card in the mask, in index
+     * order, or NO_CARD if the mask has n or fewer cards.
+     */
+    public static int select(long mask, int n)
+    {
+        for (int i = 0; i < n && mask != 0; ++i) {
+            mask &= mask - 1; // Clear lowest set bit
+        }
+        return mask == 0 ? NO_CARD : Long.numberOfTrailingZeros(mask);
+    }
+
+    public static long of(Iterable<Card> cards)
+    {
+        long mask = 0;
+        for (Card c : cards) {
+            if (c != null) {
+                mask |= bit(c);
+            }
+        }
+        return mask;
+    }
+
+    public static List<Card> toList(long mask)
+    {
+        List<Card> cards = new ArrayList<>(Long.bitCount(mask));
+        for (; mask != 0; mask &= mask - 1) {
+            cards.add(Card.of(Long.numberOfTrailingZeros(mask)));
+        }
+        return cards;
+    }
+
+}
@@ -1,117 +1,188 @@
 package model;
 
+import algorithms.XorShiftRandom;
 import game.Hearts;
+import game.State;
 
 import java.util.*;
 
 public class Model {
 
-    private List<List<Card>> hands;
-    private List<Card> p1Hand, p2Hand, p3Hand, p4Hand;
+    // Layout of the undo tokens returned by makeMove. The low bits hold the
+    // card and player; if the move completed a trick, the trick's cards are
+    // kept too, so the trick can be restored without any allocation. The
+    // high bits hold the known voids from before the move
+    private static final int TOKEN_CARD_BITS = 6, TOKEN_PLAYER_SHIFT = 6, TOKEN_LEADER_SHIFT = 11, TOKEN_TRICK_SHIFT = 16;
+    private static final int TOKEN_VOIDS_SHIFT = 40;
+    private static final long TOKEN_CARD_MASK = 0x3F, TOKEN_SEAT_MASK = 0x3, TOKEN_VOIDS_MASK = 0xFFFF;
+    private static final long TOKEN_HEARTS_BROKEN = 1L << 8, TOKEN_TRICK_ENDED = 1L << 9, TOKEN_ROUND_ENDED = 1L << 10;
+
+    // Each hand is a CardMask, i.e., bit i is set if the player holds the card with index i
+    private long[] hands;
+    private long playedMask; // Cards played so far this round, including the current trick
     private int[] playerScores;
 
-    private Map<Integer, int[]> oldPlayerScores; // Map of round number to list of player scores
+    private BeliefTracker beliefs; // What everyone knows about the hidden cards this round
+
+    // Zobrist hash of the round in progress, updated as the model changes,
+    // and the hashes from before each move made with makeMove, for unmakeMove
+    private long hash;
+    private long[] hashHistory;
+    private int hashHistorySize;
+
+    // Scores of completed rounds, indexed by round number - 1. Rows are never
+    // modified after being added, so copies of a model can share this array
+    private int[][] oldPlayerScores;
+    private int[] oldTotalScores; // Sum of oldPlayerScores for each player
 
     private int activePlayer, trickNumber, roundNum;
     private boolean heartsBroken;
 
-    private Card[] played; // Cards played this trick
-    private Card led; // The card that was led to start the trick
+    private int[] trick; // Index of card played by each player this trick, or CardMask.NO_CARD
+    private int trickSize, leader; // Number of cards played this trick, and player who led
+
+    // Summary of the trick, kept up to date as cards are played
+    private int trickHigh, trickWinner; // Highest card of the led suit, and who played it
+    private int trickHearts;
+    private boolean trickHasQueen;
 
     private boolean gameOver, runningAITurn;
     private List<Integer> winners;
 
+    // Each round's deal is drawn from its own generator, seeded from this and
+    // the round number, so searches on copies never change the real deals
+    private final long seed;
+    private static final long ROUND_SEED_STEP = 0x9E3779B97F4A7C15L;
+
     public Model()
     {
+        this(new Random().nextLong());
+    }
+
+    /**
+     * Creates a model whose deals are all determined by the seed, so a game
+     * can be replayed with the same cards
+     */
+    public Model(long seed)
+    {
+        this.seed = seed;
         trickNumber = 1;
         roundNum = 1;
-        led = null;
-        played = new Card[Hearts.NUM_PLAYERS];
+        hands = new long[Hearts.NUM_PLAYERS];
+        trick = new int[Hearts.NUM_PLAYERS];
+        Arrays.fill(trick, CardMask.NO_CARD);
         playerScores = new int[Hearts.NUM_PLAYERS]; // In Java, values default to 0
-        oldPlayerScores = new HashMap<>();
+        beliefs = new BeliefTracker(Hearts.NUM_PLAYERS);
+        oldPlayerScores = new int[0][];
+        oldTotalScores = new int[Hearts.NUM_PLAYERS];
         heartsBroken = false;
         gameOver = false;
+        hashHistory = new long[Hearts.NUM_PLAYERS * Hearts.CARDS_PER_PLAYER];
 
         dealCards();
+        hash = computeZobristHash();
     }
 
     public Model(Model other)
     {
-        // Deep copy hands list
-        hands = new ArrayList<>();
-        for (int i = 0; i < other.hands.size(); ++i) {
-            List<Card> hand = other.hands.get(i);
-            hands.add(new ArrayList<>());
-
-            for (Card card : hand) {
-                hands.get(i).add(new Card(card));
-            }
-        }
-
-        p1Hand = hands.get(0);
-        p2Hand = hands.get(1);
-        p3Hand = hands.get(2);
-        p4Hand = hands.get(3);
-
-        playerScores = Arrays.copyOf(other.playerScores, other.playerScores.length);
-
-        // Deep copy oldPlayerScores map
-        oldPlayerScores = new HashMap<>();
-        for (int key : other.oldPlayerScores.keySet()) {
-            int[] scores = other.oldPlayerScores.get(key);
-            oldPlayerScores.put(key, Arrays.copyOf(scores, scores.length));
-        }
+        // Every field is either a primitive, a small primitive array, or
+        // shared immutable data, so copying is cheap
+        hands = other.hands.clone();
+        playedMask = other.playedMask;
+        beliefs = new BeliefTracker(other.beliefs);
+        hash = other.hash;
+        hashHistory = other.hashHistory.clone();
+        hashHistorySize = other.hashHistorySize;
+        playerScores = other.playerScores.clone();
+        oldPlayerScores = other.oldPlayerScores;
+        oldTotalScores = other.oldTotalScores.clone();
 
         activePlayer = other.activePlayer;
         trickNumber = other.trickNumber;
         roundNum = other.roundNum;
         heartsBroken = other.heartsBroken;
 
-        // Deep copy played array
-        played = new Card[other.played.length];
-        for (int i = 0; i < played.length; ++i) {
-            played[i] = other.played[i] == null ? null : new Card(other.played[i]);
-        }
+        trick = other.trick.clone();
+        trickSize = other.trickSize;
+        leader = other.leader;
+        trickHigh = other.trickHigh;
+        trickWinner = other.trickWinner;
+        trickHearts = other.trickHearts;
+        trickHasQueen = other.trickHasQueen;
 
-        led = other.led == null ? null : new Card(other.led);
         gameOver = other.gameOver;
+        winners = other.winners;
+        seed = other.seed;
     }
 
     public int getActivePlayer() { return activePlayer; }
     public int getRoundNum() { return roundNum; }
-    public Map<Integer, int[]> getRoundScores() { return oldPlayerScores; }
-    public Card getLedCard() { return led; }
-    public List<Card> getHand(int handNum) { return hands.get(handNum); }
+    public Card getLedCard() { return trickSize == 0 ? null : CardMask.card(trick[leader]); }
+    public List<Card> getHand(int handNum) { return CardMask.toList(hands[handNum]); }
+    public long getHandMask(int handNum) { return hands[handNum]; }
+    public long getPlayedMask() { return playedMask; }
+    public boolean isVoid(int playerID, int suit) { return beliefs.isVoid(playerID, suit); }
+    public BeliefTracker getBeliefs() { return beliefs; }
     public boolean isHeartsBroken() { return heartsBroken; }
     public boolean isFirstTrick() { return trickNumber == 1; }
     public boolean isGameOver() { return gameOver; }
     public int[] getCurrentScoresForThisRound() { return playerScores; }
     public int getTrickNumber() { return trickNumber; }
-    public Card[] getCardsPlayed() { return played; }
+    public int getTrickSize() { return trickSize; }
+    public int getLeader() { return leader; }
+    public int getTrickCard(int playerID) { return trick[playerID]; }
     public List<Integer> winners() { return winners; }
+
+    /**
+     * Returns the information set key of the given player, without allocating
+     *
+     * @see game.State#packKey
+     */
+    public long infoSetKey(int playerID)
+    {
+        return State.packKey(hands[playerID], trickSize, trickHigh, trickHearts, trickHasQueen,
+                isFirstTrick(), heartsBroken);
+    }
     public void setRunningAITurn(boolean b) { runningAITurn = b; }
 
+    public Map<Integer, int[]> getRoundScores()
+    {
+        Map<Integer, int[]> roundScores = new HashMap<>();
+        for (int i = 0; i < oldPlayerScores.length; ++i) {
+            roundScores.put(i+1, oldPlayerScores[i]);
+        }
+        return roundScores;
+    }
+
+    public Card[] getCardsPlayed()
+    {
+        Card[] played = new Card[trick.length];
+        for (int i = 0; i < played.length; ++i) {
+            played[i] = CardMask.card(trick[i]);
+        }
+        return played;
+    }
+
     public Card getCard(int handNum, int index)
     {
-        List<Card> hand = hands.get(handNum);
-        return index < hand.size() ? hand.get(index) : null;
+        return CardMask.card(CardMask.select(hands[handNum], index));
     }
 
     public int getSuit(int handNum, int index)
     {
-        List<Card> hand = hands.get(handNum);
-        return index < hand.size() ? hand.get(index).getSuit() : -1;
+        final int card = CardMask.select(hands[handNum], index);
+        return card == CardMask.NO_CARD ? -1 : CardMask.suit(card);
     }
 
     public int getValue(int handNum, int index)
     {
-        List<Card> hand = hands.get(handNum);
-        return index < hand.size() ? hand.get(index).getValue() : -1;
+        final int card = CardMask.select(hands[handNum], index);
+        return card == CardMask.NO_CARD ? -1 : CardMask.value(card);
     }
 
     public boolean cardAtIndex(int playerID, int index)
     {
-        return index < hands.get(playerID).size();
+        return index < CardMask.size(hands[playerID]);
     }
 
     public List<Integer> winningPlayers()
@@ -133,13 +204,9 @@ public class Model {
         // Start from the current score of this round
         int[] totalScores = playerScores.clone();
 
-        for (int key : oldPlayerScores.keySet()) {
-            int[] roundScores = oldPlayerScores.get(key);
-
-            // Increment each accumulator by corresponding player's score this round
-            for (int playerID = 0; playerID < totalScores.length; ++playerID) {
-                totalScores[playerID] += roundScores[playerID];
-            }
+        // Increment each accumulator by corresponding player's score in previous rounds
+        for (int playerID = 0; playerID < totalScores.length; ++playerID) {
+            totalScores[playerID] += oldTotalScores[playerID];
         }
 
         return totalScores;
@@ -149,36 +216,207 @@ public class Model {
     {
         if (!heartsBroken) {
             heartsBroken = true;
+            hash ^= Zobrist.HEARTS_BROKEN;
             if (!runningAITurn) System.out.println("Hearts broken!");
         }
     }
 
     public void setPlayed(int playerID, Card c)
     {
-        setPlayed(playerID, hands.get(playerID).indexOf(c));
+        setPlayedIndex(playerID, c.ordinal());
     }
 
     public void setPlayed(int playerID, int index)
     {
-        played[playerID] = hands.get(playerID).remove(index);
-        if (led == null) {
-            led = played[playerID];
-        }
-        if (played[playerID].getSuit() == Card.HEART_SUIT && !heartsBroken) {
+        setPlayedIndex(playerID, CardMask.select(hands[playerID], index));
+    }
+
+    private void setPlayedIndex(int playerID, int card)
+    {
+        final long bit = CardMask.bit(card);
+        hands[playerID] &= ~bit;
+        playedMask |= bit;
+
+        beliefs.cardPlayed(playerID, card, trickSize == 0 ? -1 : CardMask.suit(trickHigh));
+        hash ^= Zobrist.HAND[playerID][card] ^ Zobrist.TRICK[playerID][card];
+
+        trick[playerID] = card;
+        addToTrickSummary(playerID, card);
+        if ((bit & CardMask.HEARTS) != 0 && !heartsBroken) {
             setHeartsBroken();
         }
     }
 
-    public Card getPlayedCard(int index) { return played[index]; }
+    private void addToTrickSummary(int playerID, int card)
+    {
+        if (trickSize++ == 0) {
+            leader = playerID;
+            trickHigh = card;
+            trickWinner = playerID;
+            trickHearts = 0;
+            trickHasQueen = false;
+        } else if (CardMask.suit(card) == CardMask.suit(trickHigh) && card > trickHigh) {
+            // Card indices within a suit are ordered by value
+            trickHigh = card;
+            trickWinner = playerID;
+        }
+
+        if (CardMask.suit(card) == Card.HEART_SUIT) {
+            ++trickHearts;
+        }
+        trickHasQueen |= card == CardMask.QUEEN_OF_SPADES;
+    }
 
-    public boolean isTrickOver()
+    // Rebuilds the trick summary by replaying the trick in order of play
+    private void rebuildTrickSummary(int numCards)
+    {
+        trickSize = 0;
+        for (int i = 0; i < numCards; ++i) {
+            final int playerID = (leader + i) % trick.length;
+            addToTrickSummary(playerID, trick[playerID]);
+        }
+    }
+
+    /**
+     * Plays a card for the active player, ending the trick if it is complete.
+     * Unlike setPlayed, this never waits for the trick to be finalized, and
+     * returns a token that unmakeMove can use to restore the current state.
+     *
+     * @param card Index of the card to play
+     * @return Undo token for this move
+     */
+    public long makeMove(int card)
+    {
+        final int player = activePlayer;
+        long token = card | ((long) player << TOKEN_PLAYER_SHIFT) | (heartsBroken ? TOKEN_HEARTS_BROKEN : 0)
+                | ((long) beliefs.getVoids() << TOKEN_VOIDS_SHIFT);
+
+        if (hashHistorySize == hashHistory.length) {
+            hashHistory = Arrays.copyOf(hashHistory, hashHistorySize * 2);
+        }
+        hashHistory[hashHistorySize++] = hash;
+
+        setPlayedIndex(player, card);
+
+        if (!isTrickOver()) {
+            nextPlayer();
+            return token;
+        }
+
+        token |= TOKEN_TRICK_ENDED | ((long) leader << TOKEN_LEADER_SHIFT);
+        for (int i = 0; i < trick.length; ++i) {
+            token |= (long) trick[i] << (TOKEN_TRICK_SHIFT + i * TOKEN_CARD_BITS);
+        }
+
+        if (endTrick()) {
+            token |= TOKEN_ROUND_ENDED;
+        }
+        return token;
+    }
+
+    /**
+     * Reverts the move that returned the given token. Moves must be unmade
+     * in the reverse order to which they were made.
+     *
+     * @param token Undo token returned by makeMove
+     */
+    public void unmakeMove(long token)
     {
-        for (Card card : played) {
-            if (card == null) {
-                return false;
+        final int card = (int) (token & TOKEN_CARD_MASK);
+        final int player = (int) ((token >>> TOKEN_PLAYER_SHIFT) & TOKEN_SEAT_MASK);
+
+        if ((token & TOKEN_ROUND_ENDED) != 0) {
+            // Every card was played when the round ended, and the last round's
+            // scores were moved into oldPlayerScores
+            final int[] lastRound = oldPlayerScores[oldPlayerScores.length-1];
+            oldPlayerScores = Arrays.copyOf(oldPlayerScores, oldPlayerScores.length-1);
+            for (int playerID = 0; playerID < oldTotalScores.length; ++playerID) {
+                oldTotalScores[playerID] -= lastRound[playerID];
+            }
+            System.arraycopy(lastRound, 0, playerScores, 0, playerScores.length);
+
+            if (gameOver) {
+                gameOver = false; // Round number was not incremented
+                winners = null;
+            } else {
+                --roundNum;
+            }
+
+            Arrays.fill(hands, 0L);
+            playedMask = CardMask.ALL;
+            trickNumber = Hearts.CARDS_PER_PLAYER + 1; // Decremented below
+        }
+
+        if ((token & TOKEN_TRICK_ENDED) != 0) {
+            --trickNumber;
+            leader = (int) ((token >>> TOKEN_LEADER_SHIFT) & TOKEN_SEAT_MASK);
+            for (int i = 0; i < trick.length; ++i) {
+                trick[i] = (int) ((token >>> (TOKEN_TRICK_SHIFT + i * TOKEN_CARD_BITS)) & TOKEN_CARD_MASK);
+            }
+            rebuildTrickSummary(trick.length);
+            playerScores[determineTrickWinner()] -= trickPoints();
+        }
+
+        final long bit = CardMask.bit(card);
+        trick[player] = CardMask.NO_CARD;
+        rebuildTrickSummary(trickSize - 1);
+        hands[player] |= bit;
+        playedMask &= ~bit;
+        heartsBroken = (token & TOKEN_HEARTS_BROKEN) != 0;
+        hash = hashHistory[--hashHistorySize];
+        beliefs.restore(playedMask, (int) ((token >>> TOKEN_VOIDS_SHIFT) & TOKEN_VOIDS_MASK));
+        activePlayer = player;
+    }
+
+    /**
+     * Redeals the cards the observer has not seen to the other players, at
+     * random. Each player keeps the same number of cards, and is never dealt
+     * a suit they are known to be void in, so the result is a deal that the
+     * observer cannot rule out. Cards already played, including the current
+     * trick, are left alone.
+     *
+     * @param observer Player whose hand is kept
+     * @param rng Random number generator for the deal
+     * @see BeliefTracker#sample
+     */
+    public void determinize(int observer, XorShiftRandom rng)
+    {
+        beliefs.sample(observer, hands, rng);
+        hash = computeZobristHash();
+    }
+
+    /**
+     * Returns the Zobrist hash of the round in progress: each player's hand
+     * and card in the current trick, each player's points this round, the
+     * active player, the trick number, and whether hearts are broken.
+     * Positions reached by different orders of play have the same hash.
+     */
+    public long zobristHash() { return hash; }
+
+    /**
+     * Computes the Zobrist hash from scratch. Always equals zobristHash()
+     */
+    public long computeZobristHash()
+    {
+        long h = Zobrist.ACTIVE[activePlayer] ^ Zobrist.TRICK_NUMBER[trickNumber]
+                ^ (heartsBroken ? Zobrist.HEARTS_BROKEN : 0);
+        for (int playerID = 0; playerID < hands.length; ++playerID) {
+            for (long rest = hands[playerID]; rest != 0; rest &= rest - 1) {
+                h ^= Zobrist.HAND[playerID][Long.numberOfTrailingZeros(rest)];
+            }
+            if (trick[playerID] != CardMask.NO_CARD) {
+                h ^= Zobrist.TRICK[playerID][trick[playerID]];
             }
+            h ^= Zobrist.score(playerID, playerScores[playerID]);
         }
-        return true;
+        return h;
+    }
+
+    public Card getPlayedCard(int index) { return CardMask.card(trick[index]); }
+
+    public boolean isTrickOver()
+    {
+        return trickSize == trick.length;
     }
 
     /**
@@ -196,18 +434,24 @@ public class Model {
         final boolean roundOver = trickNumber == Hearts.CARDS_PER_PLAYER;
         final int oldTrickNum = trickNumber;
         trickNumber = roundOver ? 1 : trickNumber + 1;
+        hash ^= Zobrist.TRICK_NUMBER[oldTrickNum] ^ Zobrist.TRICK_NUMBER[trickNumber];
 
         // Determine winner
+        hash ^= Zobrist.ACTIVE[activePlayer];
         activePlayer = determineTrickWinner();
+        hash ^= Zobrist.ACTIVE[activePlayer];
 
         // Add to the points to the player that won this trick
         scoreTrick(activePlayer, oldTrickNum);
 
         // Reset cards
-        for (int i = 0; i < played.length; ++i) {
-            played[i] = null;
+        for (int playerID = 0; playerID < trick.length; ++playerID) {
+            if (trick[playerID] != CardMask.NO_CARD) {
+                hash ^= Zobrist.TRICK[playerID][trick[playerID]];
+            }
         }
-        led = null;
+        Arrays.fill(trick, CardMask.NO_CARD);
+        trickSize = 0;
 
         if (roundOver) {
             handleRoundOver();
@@ -231,9 +475,7 @@ public class Model {
         ++roundNum;
 
         // Reset scores, heartsBroken, and trick number
-        for (int i = 0; i < playerScores.length; ++i) {
-            playerScores[i] = 0;
-        }
+        Arrays.fill(playerScores, 0);
         heartsBroken = false;
         trickNumber = 1;
 
@@ -242,20 +484,17 @@ public class Model {
 
         // Choose arbitrary player to be first player for card trading
         activePlayer = 0;
+
+        hash = computeZobristHash();
     }
 
     private void scoreTrick(int playerID, int trickNumber)
     {
-        int score = 0;
-        for (Card c : played) {
-            if (c.getSuit() == Card.HEART_SUIT) {
-                ++score;
-            } else if (c.getValue() == Card.QUEEN_VAL && c.getSuit() == Card.SPADE_SUIT) {
-                score += Hearts.QUEEN_OF_SPADES_SCORE;
-            }
-        }
+        final int score = trickPoints();
 
+        hash ^= Zobrist.score(playerID, playerScores[playerID]);
         playerScores[playerID] += score;
+        hash ^= Zobrist.score(playerID, playerScores[playerID]);
 
         if (!runningAITurn) {
             System.out.printf("Player %d won trick %d, earning %d point%s. ",
@@ -264,30 +503,24 @@ public class Model {
         }
     }
 
-    private int determineTrickWinner()
+    private int trickPoints()
     {
-        final int ledSuit = led.getSuit();
-        int maxVal = 0, trickWinner = 0;
-
-        for (int i = 0; i < played.length; ++i) {
-            final Card c = played[i];
-            final int val = c.getSuit() == ledSuit ? c.getValue() : 0;
-
-            if (val > maxVal) {
-                maxVal = val;
-                trickWinner = i;
-            }
-        }
+        return trickHearts + (trickHasQueen ? Hearts.QUEEN_OF_SPADES_SCORE : 0);
+    }
 
+    private int determineTrickWinner()
+    {
         return trickWinner;
     }
 
     public int nextPlayer()
     {
+        hash ^= Zobrist.ACTIVE[activePlayer];
         ++activePlayer;
         if (activePlayer == Hearts.NUM_PLAYERS) {
             activePlayer = 0;
         }
+        hash ^= Zobrist.ACTIVE[activePlayer];
         return activePlayer;
     }
 
@@ -295,26 +528,24 @@ public class Model {
     private boolean updateOldScores(int roundNumber)
     {
         // Update oldPlayerScores
-        // This must be done first, before computing totals
-        oldPlayerScores.put(roundNumber, playerScores.clone());
+        // Copy rather than append in place, since copies of this model may share the array
+        oldPlayerScores = Arrays.copyOf(oldPlayerScores, roundNumber);
+        oldPlayerScores[roundNumber-1] = playerScores.clone();
 
         // Compute totals
-        int[] totalScores = new int[Hearts.NUM_PLAYERS];
-        for (int[] scores : oldPlayerScores.values()) {
-            for (int playerID = 0; playerID < scores.length; ++playerID) {
-                totalScores[playerID] += scores[playerID];
-            }
+        for (int playerID = 0; playerID < oldTotalScores.length; ++playerID) {
+            oldTotalScores[playerID] += playerScores[playerID];
         }
 
         // Check for game over
-        final OptionalInt maxScore = Arrays.stream(totalScores).max();
-        if (maxScore.isPresent() && maxScore.getAsInt() >= Hearts.END_SCORE) {
+        final int maxScore = Arrays.stream(oldTotalScores).max().getAsInt();
+        if (maxScore >= Hearts.END_SCORE) {
             gameOver = true;
-            final int minScore = Arrays.stream(totalScores).min().getAsInt();
+            final int minScore = Arrays.stream(oldTotalScores).min().getAsInt();
 
             winners = new ArrayList<>();
-            for (int playerID = 0; playerID < totalScores.length; ++playerID) {
-                if (totalScores[playerID] == minScore) {
+            for (int playerID = 0; playerID < oldTotalScores.length; ++playerID) {
+                if (oldTotalScores[playerID] == minScore) {
                     winners.add(playerID);
                 }
             }
@@ -325,38 +556,37 @@ public class Model {
 
     public int[] getFinalTotalScores()
     {
-        int[] totalScores = new int[Hearts.NUM_PLAYERS];
-        for (int[] scores : oldPlayerScores.values()) {
-            for (int playerID = 0; playerID < scores.length; ++playerID) {
-                totalScores[playerID] += scores[playerID];
-            }
-        }
-        return totalScores;
+        return oldTotalScores.clone();
     }
 
+    public int getFinalTotalScore(int playerID) { return oldTotalScores[playerID]; }
+
     private void dealCards()
     {
-        // Reset hands
-        p1Hand = new ArrayList<>(Hearts.CARDS_PER_PLAYER);
-        p2Hand = new ArrayList<>(Hearts.CARDS_PER_PLAYER);
-        p3Hand = new ArrayList<>(Hearts.CARDS_PER_PLAYER);
-        p4Hand = new ArrayList<>(Hearts.CARDS_PER_PLAYER);
-        hands = Arrays.asList(p1Hand, p2Hand, p3Hand, p4Hand);
-
         final int numPlayers = Hearts.NUM_PLAYERS;
         final int numCards = numPlayers * Hearts.CARDS_PER_PLAYER;
 
-        List<Card> allCards = new ArrayList<>(numCards);
-        for (int val = 2; val <= Card.ACE_VAL; ++val) { // Values are from 2 to ACE_VAL (14)
-            for (int s = 0; s < numPlayers; ++s) {      // Suits start at 0
-                allCards.add(new Card(s, val));
-            }
+        // Shuffle card indices with a Fisher-Yates shuffle
+        final Random rng = new Random(seed + (roundNum - 1) * ROUND_SEED_STEP);
+        int[] deck = new int[numCards];
+        for (int i = 0; i < numCards; ++i) {
+            deck[i] = i;
         }
-        Collections.shuffle(allCards);
+        for (int i = numCards - 1; i > 0; --i) {
+            final int j = rng.nextInt(i + 1);
+            final int tmp = deck[i];
+            deck[i] = deck[j];
+            deck[j] = tmp;
+        }
+
+        // Reset hands
+        Arrays.fill(hands, 0L);
+        playedMask = 0L;
+        beliefs.reset();
 
         for (int i = 0; i < Hearts.CARDS_PER_PLAYER; ++i) {
             for (int j = 0; j < numPlayers; ++j) {
-                hands.get(j).add(allCards.get(i*numPlayers+j));
+                hands[j] |= CardMask.bit(deck[i*numPlayers+j]);
             }
         }
     }
@@ -0,0 +1,46 @@
+package model;
+
+import algorithms.XorShiftRandom;
+import game.Hearts;
+
+/**
+ * Random keys for Zobrist hashing of a round in progress. The hash of a
+ * model is the XOR of the keys of everything in it, so a change to the
+ * model changes the hash by XORing out the old keys and XORing in the new.
+ */
+final class Zobrist {
+
+    static final int MAX_ROUND_SCORE = Card.NUM_CARDS / Card.NUM_SUITS + Hearts.QUEEN_OF_SPADES_SCORE;
+
+    static final long[][] HAND = new long[Hearts.NUM_PLAYERS][Card.NUM_CARDS]; // Card in a player's hand
+    static final long[][] TRICK = new long[Hearts.NUM_PLAYERS][Card.NUM_CARDS]; // Card a player played this trick
+    static final long[][] SCORE = new long[Hearts.NUM_PLAYERS][MAX_ROUND_SCORE + 1]; // Points taken this round
+    static final long[] ACTIVE = new long[Hearts.NUM_PLAYERS];
+    static final long[] TRICK_NUMBER = new long[Hearts.CARDS_PER_PLAYER + 2];
+    static final long HEARTS_BROKEN;
+
+    static {
+        // Fixed seed, so hashes are the same in every run
+        XorShiftRandom rng = new XorShiftRandom(0x48656172747321L);
+        for (int playerID = 0; playerID < Hearts.NUM_PLAYERS; ++playerID) {
+            fill(HAND[playerID], rng);
+            fill(TRICK[playerID], rng);
+            fill(SCORE[playerID], rng);
+        }
+        fill(ACTIVE, rng);
+        fill(TRICK_NUMBER, rng);
+        HEARTS_BROKEN = rng.nextLong();
+    }
+
+    private Zobrist() {}
+
+    private static void fill(long[] keys, XorShiftRandom rng)
+    {
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = rng.nextLong();
+        }
+    }
+
+    static long score(int playerID, int score) { return SCORE[playerID][Math.min(score, MAX_ROUND_SCORE)]; }
+
+}
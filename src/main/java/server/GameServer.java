@@ -0,0 +1,346 @@
+package server;
+
+import algorithms.CFRCheckpoint;
+import algorithms.CFRPlayer;
+import algorithms.SearchBudget;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import game.Hearts;
+import game.PlayerType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many games at once behind an HTTP API that speaks JSON:
+ *
+ *   POST   /games?players=HUMAN,UCT_AI,UCT_AI,UCT_AI&seed=1  creates a game
+ *   GET    /games/{id}?player=0                              gets its state
+ *   POST   /games/{id}/play?card=QS&player=0                 plays a card for the active player
+ *   POST   /games/{id}/ai?ms=200&player=0                    plays the active player's AI move
+ *   DELETE /games/{id}                                       ends a game
+ *   GET    /stats                                            gets latency percentiles per request type
+ *
+ * The player parameter picks whose hand, and legal moves if it is their
+ * turn, to include in the state. Each game is a session, whose requests run
+ * one at a time in the order they arrive (see SessionExecutor). Quick
+ * requests run on the request pool, and AI moves on the search pool, which
+ * has one thread per core, so searches never compete for the CPU. Each
+ * search runs on one thread, with a deadline of ms milliseconds after the
+ * request arrived, so time spent queued counts against it. Deleting a game
+ * cancels its search.
+ *
+ * Usage: GameServer [port] [search threads], defaulting to 8080 and the number of cores
+ */
+public class GameServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    private static final long DEFAULT_AI_MS = 200, MAX_AI_MS = 10_000;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+    static final String[] REQUEST_TYPES = {"create", "state", "play", "ai", "delete", "stats"};
+
+    static {
+        // Send each response as soon as it is written. Otherwise its headers
+        // and body can be held up by Nagle's algorithm, adding about 40 ms to
+        // every request from a client that delays its ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer http;
+    private final ExecutorService requestPool, searchPool;
+    private final ScheduledExecutorService reaper;
+    private final ConcurrentMap<String, Session> sessions;
+    private final AtomicLong nextId;
+    private final Map<String, LatencyHistogram> latencies;
+    private volatile CFRCheckpoint checkpoint; // Shared by every CFR player, or null if they play randomly
+
+    /**
+     * @param port Port to listen on, or 0 for any free port
+     */
+    public GameServer(int port, int searchThreads) throws IOException
+    {
+        http = HttpServer.create(new InetSocketAddress(port), 0);
+        requestPool = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()),
+                daemonThreads("server-request"));
+        searchPool = Executors.newFixedThreadPool(Math.max(1, searchThreads), daemonThreads("server-search"));
+        reaper = Executors.newSingleThreadScheduledExecutor(daemonThreads("server-reaper"));
+        sessions = new ConcurrentHashMap<>();
+        nextId = new AtomicLong();
+
+        latencies = new LinkedHashMap<>();
+        for (String type : REQUEST_TYPES) {
+            latencies.put(type, new LatencyHistogram());
+        }
+
+        http.setExecutor(requestPool);
+        http.createContext("/", this::handle);
+    }
+
+    private static ThreadFactory daemonThreads(String name)
+    {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public void setCheckpoint(CFRCheckpoint checkpoint) { this.checkpoint = checkpoint; }
+    public int getPort() { return http.getAddress().getPort(); }
+    public int numSessions() { return sessions.size(); }
+    public LatencyHistogram getLatency(String requestType) { return latencies.get(requestType); }
+
+    public void start()
+    {
+        http.start();
+        reaper.scheduleWithFixedDelay(this::closeIdleSessions, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops accepting requests, and cancels every search in progress
+     */
+    public void stop()
+    {
+        http.stop(0);
+        reaper.shutdownNow();
+        for (Session session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+        searchPool.shutdownNow();
+        requestPool.shutdownNow();
+    }
+
+    private void closeIdleSessions()
+    {
+        final long now = System.nanoTime();
+        for (Session session : sessions.values()) {
+            if (now - session.getLastUsedNanos() > IDLE_TIMEOUT_NANOS && sessions.remove(session.getId(), session)) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Work done for a request, which returns the body of the response
+     */
+    private interface Action {
+        String run() throws RequestException;
+    }
+
+    private void handle(HttpExchange exchange)
+    {
+        final long startNanos = System.nanoTime();
+        final String method = exchange.getRequestMethod();
+        final String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+        final Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        try {
+            if (path.length == 1 && path[0].equals("stats")) {
+                requireMethod(method, "GET");
+                respond(exchange, "stats", startNanos, this::statsJson);
+                return;
+            }
+            if (!path[0].equals("games") || path.length > 3) {
+                throw new RequestException(404, "No such resource");
+            }
+
+            if (path.length == 1) {
+                requireMethod(method, "POST");
+                respond(exchange, "create", startNanos, () -> createSession(params));
+                return;
+            }
+
+            final Session session = sessions.get(path[1]);
+            if (session == null) {
+                throw new RequestException(404, "No game " + path[1]);
+            }
+            final int viewer = intParam(params, "player", -1, -1, Hearts.NUM_PLAYERS - 1);
+
+            if (path.length == 2 && method.equals("DELETE")) {
+                // Not queued behind the session's other requests, so it can cancel a search in progress
+                sessions.remove(session.getId(), session);
+                session.close();
+                respond(exchange, "delete", startNanos, () -> "{\"id\":\"" + session.getId() + "\",\"closed\":true}");
+            } else if (path.length == 2) {
+                requireMethod(method, "GET");
+                session.executor.execute(() -> respond(exchange, "state", startNanos, () -> session.state(viewer)),
+                        requestPool);
+            } else if (path[2].equals("play")) {
+                requireMethod(method, "POST");
+                final String card = params.get("card");
+                session.executor.execute(() -> respond(exchange, "play", startNanos, () -> session.play(card, viewer)),
+                        requestPool);
+            } else if (path[2].equals("ai")) {
+                requireMethod(method, "POST");
+                final long ms = intParam(params, "ms", (int) DEFAULT_AI_MS, 1, (int) MAX_AI_MS);
+                final SearchBudget budget = SearchBudget.until(startNanos + TimeUnit.MILLISECONDS.toNanos(ms));
+                session.executor.execute(() -> respond(exchange, "ai", startNanos, () -> session.aiMove(budget, viewer)),
+                        searchPool);
+            } else {
+                throw new RequestException(404, "No such resource");
+            }
+        } catch (RequestException e) {
+            send(exchange, e.getStatus(), errorJson(e.getMessage()));
+        }
+    }
+
+    private void respond(HttpExchange exchange, String type, long startNanos, Action action)
+    {
+        int status = 200;
+        String body;
+        try {
+            body = action.run();
+        } catch (RequestException e) {
+            status = e.getStatus();
+            body = errorJson(e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.printf("Failed to handle %s %s: %s\n", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            status = 500;
+            body = errorJson("Internal error");
+        }
+
+        send(exchange, status, body);
+        latencies.get(type).record(System.nanoTime() - startNanos);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body)
+    {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // The client went away, so there is no one to tell
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String createSession(Map<String, String> params) throws RequestException
+    {
+        final String players = params.getOrDefault("players", "HUMAN,UCT_AI,UCT_AI,UCT_AI");
+        final String[] names = players.split(",");
+        if (names.length != Hearts.NUM_PLAYERS) {
+            throw new RequestException(400, "A game needs " + Hearts.NUM_PLAYERS + " players, not " + names.length);
+        }
+
+        PlayerType[] types = new PlayerType[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            try {
+                types[i] = PlayerType.valueOf(names[i].trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RequestException(400, "Invalid player type '" + names[i] + "'");
+            }
+        }
+
+        long seed;
+        try {
+            seed = params.containsKey("seed") ? Long.parseLong(params.get("seed")) : ThreadLocalRandom.current().nextLong();
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid seed '" + params.get("seed") + "'");
+        }
+
+        final String id = Long.toString(nextId.incrementAndGet());
+        Session session = new Session(id, types, seed, checkpoint);
+        sessions.put(id, session);
+        return session.state(intParam(params, "player", -1, -1, Hearts.NUM_PLAYERS - 1));
+    }
+
+    private String statsJson()
+    {
+        StringBuilder sb = new StringBuilder("{\"sessions\":").append(sessions.size()).append(",\"latency\":{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            sb.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":").append(entry.getValue().toJson());
+            first = false;
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static void requireMethod(String method, String expected) throws RequestException
+    {
+        if (!method.equals(expected)) {
+            throw new RequestException(405, "Expected " + expected + ", not " + method);
+        }
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue, int min, int max)
+            throws RequestException
+    {
+        final String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            final int parsed = Integer.parseInt(value);
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new RequestException(400, "Invalid " + name + " '" + value + "', expected " + min + " to " + max);
+    }
+
+    private static Map<String, String> parseQuery(String query)
+    {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            final int equals = pair.indexOf('=');
+            final String key = equals < 0 ? pair : pair.substring(0, equals);
+            final String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String errorJson(String message)
+    {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    public static void main(String[] args)
+    {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        final int searchThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        GameServer server = null;
+        try {
+            server = new GameServer(port, searchThreads);
+        } catch (IOException e) {
+            System.err.printf("Failed to listen on port %d: %s\n", port, e.getMessage());
+            System.exit(1);
+        }
+
+        try {
+            CFRCheckpoint checkpoint = CFRCheckpoint.open(Paths.get(CFRPlayer.DEFAULT_FILENAME));
+            checkpoint.preload();
+            server.setCheckpoint(checkpoint);
+        } catch (NoSuchFileException e) {
+            System.err.printf("'%s' does not exist. CFR players will play randomly.\n", CFRPlayer.DEFAULT_FILENAME);
+        } catch (IOException e) {
+            System.err.printf("Failed to load CFR training data from '%s': %s. CFR players will play randomly.\n",
+                    CFRPlayer.DEFAULT_FILENAME, e.getMessage());
+        }
+
+        server.start();
+        System.out.printf("Serving games on port %d, with %d search threads\n", server.getPort(), searchThreads);
+    }
+
+}
@@ -0,0 +1,105 @@
+package server;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of latencies in buckets that grow exponentially, for estimating
+ * percentiles in constant memory. Each power of two is split into
+ * SUB_BUCKETS buckets, so a percentile is within about 1/SUB_BUCKETS of
+ * its true value.
+ *
+ * Latencies may be recorded from any number of threads without locks.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count, totalNanos, maxNanos;
+
+    public LatencyHistogram()
+    {
+        counts = new AtomicLongArray(NUM_BUCKETS);
+        count = new AtomicLong();
+        totalNanos = new AtomicLong();
+        maxNanos = new AtomicLong();
+    }
+
+    public void record(long nanos)
+    {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() { return count.get(); }
+    public long getMaxNanos() { return maxNanos.get(); }
+    public double getMeanNanos() { return count.get() == 0 ? 0 : (double) totalNanos.get() / count.get(); }
+
+    /**
+     * @param percentile From 0 to 100
+     * @return The upper bound of the bucket holding the given percentile, or 0 if nothing was recorded
+     */
+    public long percentileNanos(double percentile)
+    {
+        final long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBound(bucket), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    // Values below SUB_BUCKETS have a bucket each. Above that, the bucket is
+    // picked by the position of the highest bit and the SUB_BUCKET_BITS below it
+    private static int bucket(long value)
+    {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long low = (SUB_BUCKETS + (long) (bucket % SUB_BUCKETS)) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * @return The count, mean and percentiles as a JSON object, in milliseconds
+     */
+    public String toJson()
+    {
+        return String.format(Locale.ROOT, "{\"count\":%d,\"meanMs\":%.3f,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f}",
+                getCount(), getMeanNanos() / 1e6, percentileNanos(50) / 1e6, percentileNanos(90) / 1e6,
+                percentileNanos(99) / 1e6, percentileNanos(99.9) / 1e6, getMaxNanos() / 1e6);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d requests, mean %.2f ms, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                getCount(), getMeanNanos() / 1e6, percentileNanos(50) / 1e6, percentileNanos(90) / 1e6,
+                percentileNanos(99) / 1e6, percentileNanos(99.9) / 1e6, getMaxNanos() / 1e6);
+    }
+
+}
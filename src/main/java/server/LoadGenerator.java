@@ -0,0 +1,191 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plays many games at once against a GameServer, to measure its latency
+ * and throughput under load. Each client plays its games one after
+ * another: seat 0 is a human, who plays a random legal card, and the other
+ * seats ask the server for AI moves. Each client also gets the state every
+ * few moves, as a viewer would.
+ *
+ * Usage: LoadGenerator [clients] [games per client] [AI ms] [server URL]
+ *
+ * Without a URL, a server is started in this process, on a free port.
+ */
+public class LoadGenerator {
+
+    private static final int STATE_INTERVAL = 8; // Moves between requests for the state
+
+    private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]*)\"");
+    private static final Pattern ACTIVE = Pattern.compile("\"activePlayer\":(\\d+)");
+    private static final Pattern GAME_OVER = Pattern.compile("\"gameOver\":(true|false)");
+    private static final Pattern LEGAL = Pattern.compile("\"legal\":\\[([^\\]]*)\\]");
+
+    private final String baseUrl;
+    private final long aiMs;
+    private final LatencyHistogram[] latencies; // Measured by the clients, indexed like GameServer.REQUEST_TYPES
+    private final AtomicLong games, moves, errors;
+
+    public LoadGenerator(String baseUrl, long aiMs)
+    {
+        this.baseUrl = baseUrl.replaceAll("/+$", "");
+        this.aiMs = aiMs;
+        latencies = new LatencyHistogram[GameServer.REQUEST_TYPES.length];
+        for (int i = 0; i < latencies.length; ++i) {
+            latencies[i] = new LatencyHistogram();
+        }
+        games = new AtomicLong();
+        moves = new AtomicLong();
+        errors = new AtomicLong();
+    }
+
+    public long getGames() { return games.get(); }
+    public long getMoves() { return moves.get(); }
+    public long getErrors() { return errors.get(); }
+
+    /**
+     * Runs the clients until each has played its games
+     */
+    public void run(int numClients, int gamesPerClient) throws InterruptedException
+    {
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < numClients; ++i) {
+            final long seed = i;
+            Thread client = new Thread(() -> {
+                Random rng = new Random(seed);
+                for (int game = 0; game < gamesPerClient; ++game) {
+                    try {
+                        playGame(rng);
+                        games.incrementAndGet();
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                        System.err.printf("Game failed: %s\n", e.getMessage());
+                    }
+                }
+            }, "load-client-" + i);
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+    }
+
+    private void playGame(Random rng) throws IOException
+    {
+        String state = request("POST", "/games?player=0&seed=" + rng.nextLong(), 0);
+        final String id = find(ID, state);
+
+        int numMoves = 0;
+        while (!Boolean.parseBoolean(find(GAME_OVER, state))) {
+            String move;
+            if (Integer.parseInt(find(ACTIVE, state)) == 0) {
+                final String[] legal = find(LEGAL, state).replace("\"", "").split(",");
+                move = request("POST", "/games/" + id + "/play?player=0&card=" + legal[rng.nextInt(legal.length)], 2);
+            } else {
+                move = request("POST", "/games/" + id + "/ai?player=0&ms=" + aiMs, 3);
+            }
+            moves.incrementAndGet();
+
+            // The new state is nested in the response to the move
+            state = move.substring(move.indexOf("\"state\":"));
+            if (++numMoves % STATE_INTERVAL == 0) {
+                state = request("GET", "/games/" + id + "?player=0", 1);
+            }
+        }
+
+        request("DELETE", "/games/" + id, 4);
+    }
+
+    // Makes a request, and records its latency as the given type
+    private String request(String method, String path, int type) throws IOException
+    {
+        final long startNanos = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+
+        final int status = connection.getResponseCode();
+        final String body;
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            body = readAll(in);
+        }
+        latencies[type].record(System.nanoTime() - startNanos);
+
+        if (status != 200) {
+            throw new IOException(method + " " + path + " returned " + status + ": " + body);
+        }
+        return body;
+    }
+
+    private static String readAll(InputStream in) throws IOException
+    {
+        if (in == null) {
+            return "";
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String find(Pattern pattern, String json) throws IOException
+    {
+        Matcher matcher = pattern.matcher(json);
+        if (!matcher.find()) {
+            throw new IOException("Unexpected response: " + json);
+        }
+        return matcher.group(1);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final int numClients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final int gamesPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        final long aiMs = args.length > 2 ? Long.parseLong(args[2]) : 20;
+
+        GameServer server = null;
+        String url;
+        if (args.length > 3) {
+            url = args[3];
+        } else {
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+
+        LoadGenerator generator = new LoadGenerator(url, aiMs);
+        System.out.printf("Playing %d games on %d clients against %s, with %d ms AI moves\n",
+                numClients * gamesPerClient, numClients, url, aiMs);
+
+        final long startNanos = System.nanoTime();
+        generator.run(numClients, gamesPerClient);
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        System.out.printf("%d games, %d moves, %d errors in %.1f s: %.1f moves/s\n", generator.getGames(),
+                generator.getMoves(), generator.getErrors(), seconds, generator.getMoves() / seconds);
+        for (int i = 0; i < GameServer.REQUEST_TYPES.length; ++i) {
+            if (generator.latencies[i].getCount() > 0) {
+                System.out.printf("%-6s %s\n", GameServer.REQUEST_TYPES[i], generator.latencies[i]);
+            }
+        }
+
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package server;
+
+/**
+ * A request that cannot be carried out, with the HTTP status to report
+ */
+class RequestException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    RequestException(int status, String message)
+    {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() { return status; }
+
+}
@@ -0,0 +1,247 @@
+package server;
+
+import algorithms.*;
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+import model.CardMask;
+import model.Model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game hosted by the server. Its methods are only called from tasks
+ * run by its executor, so they never run at the same time, except for
+ * close(), which may be called from any thread.
+ */
+class Session {
+
+    private final String id;
+    private final PlayerType[] playerTypes;
+    private final Model model;
+    private final Hearts game;
+    private final CFRCheckpoint checkpoint;
+    private final long seed;
+    private int movesMade;
+
+    // One UCT searcher per seat, kept between turns so each search can reuse the last one's tree
+    private final Map<Integer, UCTAlgorithm<Card>> searchers = new HashMap<>();
+    private final CFRPlayer[] cfrPlayers;
+
+    private volatile UCTAlgorithm<Card> searching; // Search in progress, if any, for close() to cancel
+    private volatile ISMCTSAlgorithm<Card> searchingInfoSets;
+    private volatile boolean closed;
+    private volatile long lastUsedNanos;
+
+    final SessionExecutor executor = new SessionExecutor();
+
+    Session(String id, PlayerType[] playerTypes, long seed, CFRCheckpoint checkpoint)
+    {
+        this.id = id;
+        this.playerTypes = playerTypes.clone();
+        this.seed = seed;
+        this.checkpoint = checkpoint;
+
+        model = new Model(seed);
+        model.setRunningAITurn(true); // Do not print each trick
+        game = new Hearts(model);
+        game.setPlayerTypes(playerTypes);
+
+        cfrPlayers = new CFRPlayer[Hearts.NUM_PLAYERS];
+        lastUsedNanos = System.nanoTime();
+    }
+
+    public String getId() { return id; }
+    public boolean isClosed() { return closed; }
+    public long getLastUsedNanos() { return lastUsedNanos; }
+
+    /**
+     * Ends the session, cancelling its search if it is running one
+     */
+    public void close()
+    {
+        closed = true;
+        final UCTAlgorithm<Card> uct = searching;
+        if (uct != null) {
+            uct.cancel();
+        }
+        final ISMCTSAlgorithm<Card> ismcts = searchingInfoSets;
+        if (ismcts != null) {
+            ismcts.cancel();
+        }
+    }
+
+    /**
+     * Plays a card for the active player
+     *
+     * @param cardName Name of the card, e.g., "QS" or "10H"
+     * @return The move and the new state, as JSON
+     */
+    public String play(String cardName, int viewer) throws RequestException
+    {
+        checkPlayable();
+
+        Card card = null;
+        if (cardName != null && cardName.length() >= 2) {
+            card = Card.fromString(cardName.toUpperCase());
+        }
+        if (card == null) {
+            throw new RequestException(400, "Invalid card '" + cardName + "'");
+        }
+        if ((game.legalMoves() & CardMask.bit(card.ordinal())) == 0) {
+            throw new RequestException(409, "Player " + model.getActivePlayer() + " cannot play " + card);
+        }
+
+        return makeMove(card, viewer);
+    }
+
+    /**
+     * Chooses and plays a move for the active player, as its player type
+     * would. A human seat is played by UCT search.
+     *
+     * @param budget Budget of the search, if the player searches
+     * @return The move and the new state, as JSON
+     */
+    public String aiMove(SearchBudget budget, int viewer) throws RequestException
+    {
+        checkPlayable();
+
+        final int player = model.getActivePlayer();
+        Card card;
+        switch (playerTypes[player]) {
+            case DUMB_AI:
+                card = DumbPlayer.chooseCard(model.getHand(player), model.getLedCard(), model.isFirstTrick(),
+                        model.isHeartsBroken());
+                break;
+            case CFR_AI:
+                if (cfrPlayers[player] == null) {
+                    cfrPlayers[player] = new CFRPlayer(game, checkpoint, seed + player);
+                }
+                card = cfrPlayers[player].chooseCard(player);
+                break;
+            case ISMCTS_AI:
+                ISMCTSAlgorithm<Card> ismcts = new ISMCTSAlgorithm<>(game);
+                ismcts.setBudget(budget);
+                searchingInfoSets = ismcts;
+                try {
+                    card = closed ? null : ismcts.search();
+                } finally {
+                    searchingInfoSets = null;
+                }
+                break;
+            default:
+                card = searchUCT(player, budget);
+                break;
+        }
+
+        if (closed) {
+            throw new RequestException(404, "Game " + id + " was closed");
+        }
+        return makeMove(card, viewer);
+    }
+
+    private Card searchUCT(int player, SearchBudget budget)
+    {
+        // Created on the player's turn, since a searcher searches for the player who is active when it is created
+        UCTAlgorithm<Card> searcher = searchers.computeIfAbsent(player, p -> new UCTAlgorithm<>(game));
+        searcher.setBudget(budget);
+
+        searching = searcher;
+        try {
+            // Checked after publishing the searcher, so a close() cannot be missed
+            return closed ? null : searcher.uct();
+        } finally {
+            searching = null;
+        }
+    }
+
+    private void checkPlayable() throws RequestException
+    {
+        lastUsedNanos = System.nanoTime();
+        if (closed) {
+            throw new RequestException(404, "Game " + id + " was closed");
+        }
+        if (model.isGameOver()) {
+            throw new RequestException(409, "Game " + id + " is over");
+        }
+    }
+
+    private String makeMove(Card card, int viewer)
+    {
+        final int player = model.getActivePlayer();
+        game.makeMove(card);
+        ++movesMade;
+        for (UCTAlgorithm<Card> searcher : searchers.values()) {
+            searcher.advance(card);
+        }
+
+        return "{\"move\":\"" + card + "\",\"player\":" + player + ",\"state\":" + state(viewer) + "}";
+    }
+
+    /**
+     * @param viewer Player whose hand to include, or -1 to include no hand
+     * @return The state of the game, as JSON
+     */
+    public String state(int viewer)
+    {
+        lastUsedNanos = System.nanoTime();
+        final boolean gameOver = model.isGameOver();
+
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"id\":\"").append(id).append('"');
+        sb.append(",\"players\":[");
+        for (int i = 0; i < playerTypes.length; ++i) {
+            sb.append(i == 0 ? "" : ",").append('"').append(playerTypes[i]).append('"');
+        }
+        sb.append("],\"round\":").append(model.getRoundNum());
+        sb.append(",\"trickNumber\":").append(model.getTrickNumber());
+        sb.append(",\"activePlayer\":").append(model.getActivePlayer());
+        sb.append(",\"heartsBroken\":").append(model.isHeartsBroken());
+        sb.append(",\"moves\":").append(movesMade);
+        sb.append(",\"gameOver\":").append(gameOver);
+
+        // When the game ends, the last round's points are already in the totals
+        appendInts(sb.append(",\"scores\":"), gameOver ? model.getFinalTotalScores() : model.getTotalScores());
+        appendInts(sb.append(",\"roundScores\":"), model.getCurrentScoresForThisRound());
+
+        sb.append(",\"trick\":[");
+        for (int i = 0; i < Hearts.NUM_PLAYERS; ++i) {
+            final int card = model.getTrickCard(i);
+            sb.append(i == 0 ? "" : ",").append(card == CardMask.NO_CARD ? "null" : "\"" + CardMask.card(card) + "\"");
+        }
+        sb.append(']');
+
+        if (viewer >= 0) {
+            appendCards(sb.append(",\"hand\":"), model.getHand(viewer));
+            if (viewer == model.getActivePlayer() && !gameOver) {
+                appendCards(sb.append(",\"legal\":"), game.moves());
+            }
+        }
+
+        if (gameOver) {
+            sb.append(",\"winners\":").append(model.winners());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendInts(StringBuilder sb, int[] values)
+    {
+        sb.append('[');
+        for (int i = 0; i < values.length; ++i) {
+            sb.append(i == 0 ? "" : ",").append(values[i]);
+        }
+        sb.append(']');
+    }
+
+    private static void appendCards(StringBuilder sb, List<Card> cards)
+    {
+        sb.append('[');
+        for (int i = 0; i < cards.size(); ++i) {
+            sb.append(i == 0 ? "" : ",").append('"').append(cards.get(i)).append('"');
+        }
+        sb.append(']');
+    }
+
+}
@@ -0,0 +1,71 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the tasks of one session in the order they are submitted, one at a
+ * time, on shared thread pools. A session holds no thread while it is
+ * idle, so a server can host any number of them.
+ *
+ * Each task says which pool it runs on, so quick requests run on the
+ * request pool, and searches on the bounded search pool, while the tasks
+ * of a session still never overlap.
+ */
+class SessionExecutor {
+
+    private static class Task {
+        final Runnable runnable;
+        final Executor pool;
+
+        Task(Runnable runnable, Executor pool)
+        {
+            this.runnable = runnable;
+            this.pool = pool;
+        }
+    }
+
+    private final Queue<Task> queue = new ArrayDeque<>();
+    private boolean running; // Whether a task is queued on, or running on, a pool
+
+    /**
+     * Runs the task on the given pool, after every task submitted before it has finished
+     */
+    public synchronized void execute(Runnable runnable, Executor pool)
+    {
+        queue.add(new Task(runnable, pool));
+        if (!running) {
+            running = true;
+            scheduleNext();
+        }
+    }
+
+    // Called with the lock held
+    private void scheduleNext()
+    {
+        final Task task = queue.poll();
+        if (task == null) {
+            running = false;
+            return;
+        }
+
+        try {
+            task.pool.execute(() -> {
+                try {
+                    task.runnable.run();
+                } finally {
+                    synchronized (this) {
+                        scheduleNext();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The server is shutting down, so the remaining tasks are dropped
+            queue.clear();
+            running = false;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package test;
+
+import algorithms.CFRCheckpoint;
+import algorithms.CounterfactualRegretMinimizer;
+import algorithms.InfoSetTable;
+import algorithms.UpdateRule;
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CFRCheckpointTest {
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        InfoSetTable strategies = new InfoSetTable(2);
+        InfoSetTable regrets = new InfoSetTable(2);
+        Random rng = new Random(0);
+
+        final int numKeys = 1000;
+        long[] keys = new long[numKeys];
+        for (int i = 0; i < numKeys; ++i) {
+            keys[i] = rng.nextLong();
+            final int numActions = 1 + i % 13;
+            for (int action = 0; action < numActions; ++action) {
+                strategies.add(strategies.getOrCreate(i % 2, keys[i], numActions), action, i + action);
+                regrets.add(regrets.getOrCreate(i % 2, keys[i], numActions), action, -i - action);
+            }
+        }
+
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        try {
+            CFRCheckpoint.write(file, strategies, regrets, 7, UpdateRule.discounted(1.5, 0.5, 2));
+            assertTrue(CFRCheckpoint.isCheckpoint(file));
+
+            CFRCheckpoint checkpoint = CFRCheckpoint.open(file);
+            assertEquals(2, checkpoint.numPlayers());
+            assertEquals(7, checkpoint.iterations());
+            assertEquals(UpdateRule.discounted(1.5, 0.5, 2), checkpoint.updateRule());
+            assertEquals(numKeys / 2, checkpoint.numInfoSets(0));
+            assertEquals(-1, checkpoint.find(0, keys[1]));
+
+            for (int i = 0; i < numKeys; ++i) {
+                final int index = checkpoint.find(i % 2, keys[i]);
+                assertEquals(keys[i], checkpoint.key(i % 2, index));
+                assertEquals(1 + i % 13, checkpoint.numActions(i % 2, index));
+                for (int action = 0; action < 1 + i % 13; ++action) {
+                    assertEquals(i + action, checkpoint.strategy(i % 2, index, action));
+                    assertEquals(-i - action, checkpoint.regret(i % 2, index, action));
+                }
+            }
+
+            InfoSetTable loadedStrategies = new InfoSetTable(2), loadedRegrets = new InfoSetTable(2);
+            checkpoint.loadInto(loadedStrategies, loadedRegrets);
+            final long handle = loadedRegrets.find(1, keys[3]);
+            assertEquals(4, InfoSetTable.numActions(handle));
+            assertEquals(-6, loadedRegrets.get(handle, 3));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUnknownUpdateRuleIsRejected() throws IOException {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        try {
+            CFRCheckpoint.write(file, new InfoSetTable(2), new InfoSetTable(2), 1, UpdateRule.LINEAR);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 99), 12);
+            }
+            IOException e = assertThrows(IOException.class, () -> CFRCheckpoint.open(file));
+            assertEquals("Unknown update rule 99", e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSampledTrainingKeepsEveryRegret() throws IOException {
+        for (CounterfactualRegretMinimizer.Sampling sampling : CounterfactualRegretMinimizer.Sampling.values()) {
+            Hearts game = new Hearts();
+            game.setAllPlayerTypes(PlayerType.CFR_AI);
+            game.setTraining(true);
+            CounterfactualRegretMinimizer<Card> trainer = new CounterfactualRegretMinimizer<>(game, 2000);
+            trainer.setSampling(sampling);
+            for (int batch = 0; batch < 3; ++batch) {
+                trainer.trainBatch(10);
+            }
+
+            Path file = Files.createTempFile("checkpoint", ".bin");
+            try {
+                trainer.save(file.toString());
+                CounterfactualRegretMinimizer<Card> loaded = new CounterfactualRegretMinimizer<>(game, 2000);
+                assertTrue(loaded.load(file.toString()));
+
+                InfoSetTable regrets = trainer.getRegrets();
+                for (int player = 0; player < regrets.numPlayers(); ++player) {
+                    assertEquals(regrets.size(player), loaded.getRegrets().size(player), sampling + " regrets");
+                    for (long key : regrets.keys(player)) {
+                        final long handle = regrets.find(player, key);
+                        final long loadedHandle = loaded.getRegrets().find(player, key);
+                        assertNotEquals(InfoSetTable.NOT_FOUND, loadedHandle, sampling + " regret");
+                        for (int action = 0; action < InfoSetTable.numActions(handle); ++action) {
+                            assertEquals(regrets.get(handle, action), loaded.getRegrets().get(loadedHandle, action));
+                        }
+                    }
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package test;
 
+import algorithms.UpdateRule;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -11,7 +12,42 @@ public class CFRTest {
         assertTrue(true);
     }
 
-//    @Test
-//    public void
+    @Test
+    public void testBatchedDiscountsMatchSingleIterations() {
+        final UpdateRule[] rules = {UpdateRule.CFR_PLUS, UpdateRule.LINEAR, UpdateRule.DISCOUNTED, UpdateRule.discounted(1, 2, 3)};
+        final int[] batches = {3, 4, 2};
+        final int iterations = 9;
+
+        for (UpdateRule rule : rules) {
+            for (double update : new double[] {1, -1}) {
+                // Discount after every iteration, as the rule is defined
+                double expectedRegret = 0, expectedStrategy = 0;
+                for (int t = 1; t <= iterations; ++t) {
+                    expectedRegret += update;
+                    expectedRegret *= update > 0 ? rule.positiveRegretDiscount(t - 1, 1) : rule.negativeRegretDiscount(t - 1, 1);
+                    expectedStrategy += 1;
+                    expectedStrategy *= rule.strategyDiscount(t - 1, 1);
+                }
+
+                // Discount as trainBatch does
+                double regret = 0, strategy = 0;
+                int trained = 0;
+                for (int n : batches) {
+                    regret *= update > 0 ? rule.positiveRegretDiscount(trained, n) : rule.negativeRegretDiscount(trained, n);
+                    strategy *= rule.strategyDiscount(trained, n);
+                    final double[] regretWeights = update > 0 ? rule.positiveRegretWeights(trained, n) : rule.negativeRegretWeights(trained, n);
+                    final double[] strategyWeights = rule.strategyWeights(trained, n);
+                    for (int i = 0; i < n; ++i) {
+                        regret += regretWeights[i] * update;
+                        strategy += strategyWeights[i];
+                    }
+                    trained += n;
+                }
+
+                assertEquals(expectedRegret, regret, 1e-12, rule + " regret");
+                assertEquals(expectedStrategy, strategy, 1e-12, rule + " strategy");
+            }
+        }
+    }
 
 }
@@ -0,0 +1,74 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import server.GameServer;
+import server.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameServerTest {
+
+    @Test
+    public void testPlayGame() throws IOException {
+        GameServer server = new GameServer(0, 1);
+        server.start();
+        try {
+            final String base = "http://localhost:" + server.getPort();
+
+            String state = request(base, "POST", "/games?players=DUMB_AI,DUMB_AI,DUMB_AI,UCT_AI&seed=3&player=0", 200);
+            assertTrue(state.contains("\"id\":\"1\""));
+            assertTrue(state.contains("\"legal\":["));
+            assertEquals(1, server.numSessions());
+
+            request(base, "POST", "/games/1/play?card=XX", 400);
+            request(base, "POST", "/games/2/ai", 404);
+            request(base, "GET", "/games/1/ai", 405);
+
+            // Play a whole trick, including a search
+            for (int move = 0; move < 4; ++move) {
+                String response = request(base, "POST", "/games/1/ai?ms=20", 200);
+                assertTrue(response.contains("\"player\":" + move));
+            }
+            assertTrue(request(base, "GET", "/games/1", 200).contains("\"trickNumber\":2"));
+
+            request(base, "DELETE", "/games/1", 200);
+            request(base, "GET", "/games/1", 404);
+            assertEquals(0, server.numSessions());
+
+            assertEquals(4, server.getLatency("ai").getCount());
+            assertTrue(request(base, "GET", "/stats", 200).contains("\"p99Ms\""));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(500_000, histogram.percentileNanos(50), 500_000 / 16.0);
+        assertEquals(990_000, histogram.percentileNanos(99), 990_000 / 16.0);
+        assertEquals(1_000_000, histogram.percentileNanos(100));
+    }
+
+    private static String request(String base, String method, String path, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+        connection.setRequestMethod(method);
+        assertEquals(expectedStatus, connection.getResponseCode(), method + " " + path);
+        try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package test;
+
+import algorithms.InfoSetTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InfoSetTableTest {
+
+    @Test
+    public void testAddAndFind() {
+        InfoSetTable table = new InfoSetTable(2);
+        Random rng = new Random(0);
+
+        final int numKeys = 20000;
+        long[] keys = new long[numKeys];
+        for (int i = 0; i < numKeys; ++i) {
+            keys[i] = rng.nextLong();
+            final long handle = table.getOrCreate(i % 2, keys[i], 1 + i % 13);
+            table.add(handle, i % 13, i);
+        }
+
+        assertEquals(numKeys / 2, table.size(0));
+        assertEquals(numKeys / 2, table.size(1));
+        assertEquals(InfoSetTable.NOT_FOUND, table.find(0, keys[1]));
+
+        for (int i = 0; i < numKeys; ++i) {
+            final long handle = table.find(i % 2, keys[i]);
+            assertEquals(1 + i % 13, InfoSetTable.numActions(handle));
+            assertEquals(i, table.get(handle, i % 13));
+        }
+    }
+
+    @Test
+    public void testGrowKeepsValues() {
+        InfoSetTable table = new InfoSetTable(1);
+        final long key = 42;
+
+        long handle = table.getOrCreate(0, key, 2);
+        table.add(handle, 0, 1.5);
+        table.add(handle, 1, -2.0);
+
+        handle = table.getOrCreate(0, key, 4);
+        double[] values = new double[4];
+        table.get(handle, values);
+
+        assertArrayEquals(new double[]{1.5, -2.0, 0, 0}, values);
+        assertEquals(1, table.size(0));
+
+        long[] keys = table.keys(0);
+        assertEquals("[42]", Arrays.toString(keys));
+    }
+
+}
@@ -0,0 +1,103 @@
+package test;
+
+import game.Hearts;
+import model.Card;
+import model.CardMask;
+import model.Model;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegalMovesTest {
+
+    @Test
+    public void testMatchesReferenceInGames() {
+        Random rng = new Random(0);
+
+        for (int game = 0; game < 200; ++game) {
+            Model model = new Model();
+            model.setRunningAITurn(true);
+
+            while (!model.isGameOver()) {
+                final long hand = model.getHandMask(model.getActivePlayer());
+                final Card cardLed = model.getLedCard();
+                final int ledSuit = cardLed == null ? -1 : cardLed.getSuit();
+
+                final long legal = Hearts.legalMoves(hand, ledSuit, model.isFirstTrick(), model.isHeartsBroken());
+                assertEquals(referenceMoves(hand, ledSuit, model.isFirstTrick(), model.isHeartsBroken()), legal);
+                assertNotEquals(0, legal);
+
+                model.makeMove(CardMask.select(legal, rng.nextInt(CardMask.size(legal))));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesReferenceForRandomHands() {
+        Random rng = new Random(1);
+
+        for (int i = 0; i < 100000; ++i) {
+            // Bias some hands towards hearts, to reach the 12 hearts rule
+            long hand = rng.nextLong() & CardMask.ALL & (rng.nextInt(4) == 0 ? rng.nextLong() : -1L);
+            if (rng.nextInt(8) == 0) {
+                hand |= CardMask.HEARTS & ~(1L << CardMask.index(Card.HEART_SUIT, 2 + rng.nextInt(13)));
+            }
+            final int ledSuit = rng.nextInt(5) - 1;
+            final boolean isFirstTrick = rng.nextBoolean(), heartsBroken = rng.nextBoolean();
+
+            assertEquals(referenceMoves(hand, ledSuit, isFirstTrick, heartsBroken),
+                    Hearts.legalMoves(hand, ledSuit, isFirstTrick, heartsBroken));
+        }
+    }
+
+    // Checks each card in turn, with the rules Hearts.moves() used before it used masks
+    private static long referenceMoves(long hand, int ledSuit, boolean isFirstTrick, boolean heartsBroken) {
+        if (CardMask.size(hand) < 2) {
+            return hand;
+        }
+
+        long legal = 0;
+        for (long m = hand; m != 0; m &= m - 1) {
+            final int card = CardMask.lowest(m);
+            if (canPlay(hand, card, ledSuit, isFirstTrick, heartsBroken)) {
+                legal |= CardMask.bit(card);
+            }
+        }
+        return legal;
+    }
+
+    private static boolean canPlay(long hand, int card, int ledSuit, boolean isFirstTrick, boolean heartsBroken) {
+        final int suit = CardMask.suit(card);
+        final boolean isPointsCard = CardMask.contains(CardMask.POINTS, card);
+        final boolean hasLedSuit = ledSuit >= 0 && (hand & CardMask.suitMask(ledSuit)) != 0;
+        final boolean onlyHearts = (hand & ~CardMask.HEARTS) == 0;
+
+        if (isFirstTrick && ledSuit >= 0) {
+            if (suit == ledSuit) {
+                return true;
+            }
+            if (hasLedSuit) {
+                return false;
+            }
+            if (!isPointsCard || onlyHearts) {
+                return true;
+            }
+            return CardMask.size(hand & CardMask.HEARTS) >= 12;
+        }
+
+        if (ledSuit < 0) {
+            if (isFirstTrick && !isPointsCard) {
+                return true;
+            }
+            if (suit != Card.HEART_SUIT) {
+                return true;
+            }
+            return heartsBroken || onlyHearts;
+        }
+
+        return suit == ledSuit || !hasLedSuit;
+    }
+
+}
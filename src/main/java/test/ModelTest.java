@@ -0,0 +1,144 @@
+package test;
+
+import algorithms.XorShiftRandom;
+import game.Hearts;
+import model.Card;
+import model.CardMask;
+import model.Model;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModelTest {
+
+    @Test
+    public void testCopyIsIndependent() {
+        Model model = new Model();
+        Model copy = new Model(model);
+
+        final int player = copy.getActivePlayer();
+        copy.makeMove(CardMask.lowest(copy.getHandMask(player)));
+
+        assertEquals(13, CardMask.size(model.getHandMask(player)));
+        assertEquals(12, CardMask.size(copy.getHandMask(player)));
+        assertEquals(0, model.getTrickSize());
+    }
+
+    @Test
+    public void testUnmakeRestoresState() {
+        Random rng = new Random(0);
+
+        for (int game = 0; game < 20; ++game) {
+            Model model = new Model();
+            model.setRunningAITurn(true);
+
+            // Play whole games, checking every move can be undone
+            while (!model.isGameOver()) {
+                final String before = snapshot(model);
+                final long hand = model.getHandMask(model.getActivePlayer());
+                final int card = CardMask.select(hand, rng.nextInt(CardMask.size(hand)));
+
+                final int round = model.getRoundNum();
+                final long token = model.makeMove(card);
+                final String after = snapshot(model);
+                assertEquals(model.computeZobristHash(), model.zobristHash());
+
+                model.unmakeMove(token);
+                assertEquals(before, snapshot(model));
+
+                model.makeMove(card);
+                if (round == model.getRoundNum() && !model.isGameOver()) {
+                    // Ending a round deals new random hands, so only compare within a round
+                    assertEquals(after, snapshot(model));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeterminizeIsConsistent() {
+        Random rng = new Random(1);
+        XorShiftRandom dealRng = new XorShiftRandom(1);
+
+        for (int game = 0; game < 20; ++game) {
+            Model model = new Model();
+            model.setRunningAITurn(true);
+
+            while (!model.isGameOver()) {
+                final int observer = model.getActivePlayer();
+                Model copy = new Model(model);
+                copy.determinize(observer, dealRng);
+
+                // The observer's view is unchanged, and no one holds a suit they showed out of
+                assertEquals(snapshot(model, observer), snapshot(copy, observer));
+                long allCards = copy.getPlayedMask();
+                for (int p = 0; p < 4; ++p) {
+                    assertEquals(0, model.getHandMask(p) & ~model.getBeliefs().possibleCards(p));
+                    assertEquals(CardMask.size(model.getHandMask(p)), CardMask.size(copy.getHandMask(p)));
+                    assertEquals(0, allCards & copy.getHandMask(p));
+                    allCards |= copy.getHandMask(p);
+                    for (int suit = 0; suit < Card.NUM_SUITS; ++suit) {
+                        if (model.isVoid(p, suit)) {
+                            assertEquals(0, copy.getHandMask(p) & CardMask.suitMask(suit));
+                        }
+                    }
+                }
+                assertEquals(CardMask.ALL, allCards);
+
+                // Voids are only known if players follow suit
+                final Card led = model.getLedCard();
+                final long legal = Hearts.legalMoves(model.getHandMask(observer), led == null ? -1 : led.getSuit(),
+                        model.isFirstTrick(), model.isHeartsBroken());
+                model.makeMove(CardMask.select(legal, rng.nextInt(CardMask.size(legal))));
+            }
+        }
+    }
+
+    // Everything the given player can see
+    private static String snapshot(Model m, int playerID) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(m.getHandMask(playerID)).append(' ');
+        for (int i = 0; i < 4; ++i) {
+            sb.append(m.getTrickCard(i)).append(',');
+            for (int suit = 0; suit < Card.NUM_SUITS; ++suit) {
+                sb.append(m.isVoid(i, suit) ? 'v' : '-');
+            }
+            sb.append(';');
+        }
+        sb.append(m.getPlayedMask()).append(' ')
+                .append(Arrays.toString(m.getTotalScores())).append(' ')
+                .append(m.getActivePlayer()).append(' ')
+                .append(m.getTrickNumber()).append(' ')
+                .append(m.infoSetKey(playerID));
+        return sb.toString();
+    }
+
+    private static String snapshot(Model m) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4; ++i) {
+            sb.append(m.getHandMask(i)).append(',').append(m.getTrickCard(i)).append(',');
+            for (int suit = 0; suit < Card.NUM_SUITS; ++suit) {
+                sb.append(m.isVoid(i, suit) ? 'v' : '-');
+            }
+            sb.append(';');
+        }
+        sb.append(m.getPlayedMask()).append(' ')
+                .append(Arrays.toString(m.getTotalScores())).append(' ')
+                .append(Arrays.toString(m.getFinalTotalScores())).append(' ')
+                .append(m.getRoundScores().size()).append(' ')
+                .append(m.getActivePlayer()).append(' ')
+                .append(m.getTrickNumber()).append(' ')
+                .append(m.getTrickSize()).append(' ')
+                .append(m.getRoundNum()).append(' ')
+                .append(m.isHeartsBroken()).append(' ')
+                .append(m.isGameOver()).append(' ')
+                .append(m.infoSetKey(m.getActivePlayer())).append(' ')
+                .append(m.zobristHash()).append(' ')
+                .append(m.getLedCard());
+        return sb.toString();
+    }
+
+}
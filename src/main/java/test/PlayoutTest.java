@@ -0,0 +1,59 @@
+package test;
+
+import algorithms.XorShiftRandom;
+import game.Hearts;
+import game.HeartsPlayout;
+import model.Card;
+import model.CardMask;
+import model.Model;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlayoutTest {
+
+    @Test
+    public void testMatchesModel() {
+        Random rng = new Random(0);
+        HeartsPlayout playout = new HeartsPlayout(HeartsPlayout.Policy.HEURISTIC);
+        int[] scores = new int[Hearts.NUM_PLAYERS];
+
+        for (int game = 0; game < 50; ++game) {
+            Model model = new Model();
+            model.setRunningAITurn(true);
+
+            // Start playouts from random points in the round
+            final int movesBefore = rng.nextInt(Hearts.NUM_PLAYERS * Hearts.CARDS_PER_PLAYER);
+            for (int i = 0; i < movesBefore; ++i) {
+                final long legal = legalMoves(model);
+                model.makeMove(CardMask.select(legal, rng.nextInt(CardMask.size(legal))));
+            }
+
+            final long handBefore = model.getHandMask(model.getActivePlayer());
+            final int numMoves = playout.playout(model, new XorShiftRandom(game), scores);
+            assertEquals(handBefore, model.getHandMask(model.getActivePlayer()));
+            assertEquals(Hearts.NUM_PLAYERS * Hearts.CARDS_PER_PLAYER - movesBefore, numMoves);
+
+            // The heuristic is deterministic, so the model should end the round with the same scores
+            final int round = model.getRoundNum();
+            while (model.getRoundNum() == round && !model.isGameOver()) {
+                final boolean isFirstTrick = model.isFirstTrick();
+                final long legal = legalMoves(model);
+                final long avoid = CardMask.HEARTS | (isFirstTrick ? CardMask.bit(CardMask.QUEEN_OF_SPADES) : 0);
+                model.makeMove(CardMask.lowest((legal & ~avoid) != 0 ? legal & ~avoid : legal));
+            }
+            for (int i = 0; i < Hearts.NUM_PLAYERS; ++i) {
+                assertEquals(model.getFinalTotalScore(i), scores[i]);
+            }
+        }
+    }
+
+    private static long legalMoves(Model model) {
+        final Card cardLed = model.getLedCard();
+        return Hearts.legalMoves(model.getHandMask(model.getActivePlayer()), cardLed == null ? -1 : cardLed.getSuit(),
+                model.isFirstTrick(), model.isHeartsBroken());
+    }
+
+}
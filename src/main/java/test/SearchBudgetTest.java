@@ -0,0 +1,90 @@
+package test;
+
+import algorithms.ISMCTSAlgorithm;
+import algorithms.SearchBudget;
+import algorithms.UCTAlgorithm;
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchBudgetTest {
+
+    @Test
+    public void testIterationBudgetIsReproducible() {
+        Hearts game = new Hearts();
+        game.setAllPlayerTypes(PlayerType.UCT_AI);
+        Card first = null;
+        for (int run = 0; run < 2; ++run) {
+            UCTAlgorithm<Card> searcher = new UCTAlgorithm<>(game.deepCopy());
+            searcher.setBudget(SearchBudget.ofIterations(2000));
+            searcher.setSeed(42);
+            final Card move = searcher.uct();
+            assertEquals(2000, searcher.getLastSearchStats().getPlayouts());
+            if (first == null) {
+                first = move;
+            } else {
+                assertEquals(first, move);
+            }
+        }
+    }
+
+    @Test
+    public void testCancelEndsSearch() throws InterruptedException {
+        Hearts game = new Hearts();
+        game.setAllPlayerTypes(PlayerType.ISMCTS_AI);
+        ISMCTSAlgorithm<Card> searcher = new ISMCTSAlgorithm<>(game);
+        searcher.setBudget(SearchBudget.ofMillis(60_000));
+
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            searcher.cancel();
+        });
+        canceller.start();
+
+        final long start = System.nanoTime();
+        assertNotNull(searcher.search());
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        canceller.join();
+    }
+
+    @Test
+    public void testCancelBeforeSearchIsNotLost() {
+        Hearts game = new Hearts();
+        game.setAllPlayerTypes(PlayerType.UCT_AI);
+        UCTAlgorithm<Card> searcher = new UCTAlgorithm<>(game);
+        searcher.setBudget(SearchBudget.ofMillis(60_000));
+
+        searcher.cancel();
+        final long start = System.nanoTime();
+        assertNotNull(searcher.uct());
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+
+        // The cancel ends only the search it reached
+        searcher.setBudget(SearchBudget.ofIterations(100));
+        searcher.uct();
+        assertEquals(100, searcher.getLastSearchStats().getPlayouts());
+    }
+
+    @Test
+    public void testCombinedBudget() {
+        SearchBudget budget = SearchBudget.ofMillis(60_000).withIterations(100);
+        assertEquals(100, budget.getMaxIterations());
+        assertTrue(budget.isTimed());
+
+        SearchBudget.Tracker tracker = budget.start();
+        int iterations = 0;
+        while (tracker.next()) {
+            ++iterations;
+        }
+        assertEquals(100, iterations);
+        assertFalse(tracker.isCancelled());
+    }
+
+}
@@ -1,9 +1,12 @@
 package test;
 
 import game.State;
+import model.CardMask;
 import model.Model;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class StateTest {
@@ -20,4 +23,25 @@ public class StateTest {
         assertEquals(newState, initialState);
     }
 
+    @Test
+    public void testModelKeyMatchesCards() {
+        Random rng = new Random(0);
+        Model model = new Model();
+        model.setRunningAITurn(true);
+
+        while (!model.isGameOver()) {
+            final int playerID = model.getActivePlayer();
+            State fromCards = new State(model.getHand(playerID), model.getCardsPlayed(),
+                    model.isFirstTrick(), model.isHeartsBroken());
+            State fromModel = State.fromModel(model, playerID);
+
+            assertEquals(fromCards.infoSetKey(), model.infoSetKey(playerID));
+            assertEquals(fromCards, fromModel);
+            assertEquals(fromCards.hashCode(), fromModel.hashCode());
+
+            final long hand = model.getHandMask(playerID);
+            model.makeMove(CardMask.select(hand, rng.nextInt(CardMask.size(hand))));
+        }
+    }
+
 }
@@ -0,0 +1,75 @@
+package test;
+
+import algorithms.SearchBudget;
+import game.PlayerType;
+import org.junit.jupiter.api.Test;
+import tournament.GameResult;
+import tournament.Standings;
+import tournament.Tournament;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TournamentTest {
+
+    private static final PlayerType[] LINEUP = {PlayerType.DUMB_AI, PlayerType.CFR_AI, PlayerType.DUMB_AI, PlayerType.CFR_AI};
+
+    @Test
+    public void testGamesAreReproducible() {
+        Tournament tournament = new Tournament(LINEUP);
+        tournament.setSeed(7);
+        for (int rotation = 0; rotation < LINEUP.length; ++rotation) {
+            GameResult first = tournament.playGame(3, rotation);
+            GameResult second = tournament.playGame(3, rotation);
+            assertEquals(first.getMoves(), second.getMoves());
+            for (int seat = 0; seat < LINEUP.length; ++seat) {
+                assertEquals((rotation + seat) % LINEUP.length, first.getSeatAgent(seat));
+                assertEquals(first.getScore(seat), second.getScore(seat));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchesDoNotChangeLaterDeals() {
+        // UCT searches play out past the end of the round on copies of the game
+        PlayerType[] lineup = {PlayerType.UCT_AI, PlayerType.DUMB_AI, PlayerType.UCT_AI, PlayerType.DUMB_AI};
+        Tournament tournament = new Tournament(lineup);
+        tournament.setSeed(7);
+        tournament.setBudget(SearchBudget.ofIterations(100));
+
+        GameResult first = tournament.playGame(3, 0);
+        assertTrue(first.getRounds() > 1);
+        for (int rotation = 1; rotation < lineup.length; ++rotation) {
+            GameResult result = tournament.playGame(3, rotation);
+            for (int round = 1; round <= Math.min(first.getRounds(), result.getRounds()); ++round) {
+                for (int seat = 0; seat < lineup.length; ++seat) {
+                    assertEquals(first.getDealtHand(round, seat), result.getDealtHand(round, seat));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStandingsCoverEveryGame() {
+        Tournament tournament = new Tournament(LINEUP);
+        tournament.setNumThreads(3);
+
+        List<GameResult> results = Collections.synchronizedList(new ArrayList<>());
+        Standings standings = tournament.run(10, results::add);
+        assertEquals(10, standings.getDeals());
+        assertEquals(40, standings.getGames());
+        assertEquals(40, results.size());
+
+        double totalWinRate = 0;
+        for (int agent = 0; agent < LINEUP.length; ++agent) {
+            totalWinRate += standings.winRate(agent);
+            assertTrue(standings.meanPoints(agent) >= 0);
+            assertTrue(standings.meanPointsError(agent) < Double.POSITIVE_INFINITY);
+        }
+        assertEquals(1.0, totalWinRate, 1e-9);
+    }
+
+}
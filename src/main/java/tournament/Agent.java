@@ -0,0 +1,21 @@
+package tournament;
+
+import model.Card;
+
+/**
+ * A player in a headless game. Each game has its own agents, so an agent
+ * may keep state from one move to the next.
+ */
+interface Agent {
+
+    /**
+     * @return The card to play, when it is the agent's turn
+     */
+    Card chooseCard();
+
+    /**
+     * Called after every move of the game, by any player
+     */
+    default void moveMade(Card move) {}
+
+}
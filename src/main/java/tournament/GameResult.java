@@ -0,0 +1,102 @@
+package tournament;
+
+import game.Hearts;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The outcome of one complete game of a tournament
+ */
+public class GameResult {
+
+    private final long deal;
+    private final int rotation;
+    private final int[] seatAgents; // Index in the lineup of the agent in each seat
+    private final int[] scores; // Final score of each seat
+    private final boolean[] winners; // Whether each seat had the lowest score
+    private final int numWinners;
+    private final int moves;
+    private final long elapsedNanos;
+    private final long[][] dealtHands; // Card mask dealt to each seat, indexed by round number - 1
+
+    GameResult(long deal, int rotation, int[] seatAgents, int[] scores, List<Integer> winners, int moves, long elapsedNanos,
+               List<long[]> dealtHands)
+    {
+        this.deal = deal;
+        this.rotation = rotation;
+        this.seatAgents = seatAgents.clone();
+        this.scores = scores.clone();
+        this.winners = new boolean[Hearts.NUM_PLAYERS];
+        for (int seat : winners) {
+            this.winners[seat] = true;
+        }
+        numWinners = winners.size();
+        this.moves = moves;
+        this.elapsedNanos = elapsedNanos;
+        this.dealtHands = dealtHands.toArray(new long[0][]);
+    }
+
+    public long getDeal() { return deal; }
+    public int getRotation() { return rotation; }
+    public int getMoves() { return moves; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public int getSeatAgent(int seat) { return seatAgents[seat]; }
+    public int getScore(int seat) { return scores[seat]; }
+    public int getRounds() { return dealtHands.length; }
+
+    /**
+     * @return The card mask the seat was dealt in the round, numbered from 1
+     */
+    public long getDealtHand(int round, int seat) { return dealtHands[round - 1][seat]; }
+
+    /**
+     * @return The seat the agent with the given index in the lineup played from
+     */
+    public int seatOf(int agent)
+    {
+        for (int seat = 0; seat < seatAgents.length; ++seat) {
+            if (seatAgents[seat] == agent) {
+                return seat;
+            }
+        }
+        throw new IllegalArgumentException("Agent " + agent + " did not play");
+    }
+
+    /**
+     * @return The seat's share of the win: 1 if it won alone, split evenly between tied winners
+     */
+    public double winShare(int seat) { return winners[seat] ? 1.0 / numWinners : 0; }
+
+    public static String csvHeader()
+    {
+        StringBuilder sb = new StringBuilder("deal,rotation");
+        for (int seat = 0; seat < Hearts.NUM_PLAYERS; ++seat) {
+            sb.append(",agent").append(seat + 1);
+        }
+        for (int seat = 0; seat < Hearts.NUM_PLAYERS; ++seat) {
+            sb.append(",score").append(seat + 1);
+        }
+        return sb.append(",moves,ms").toString();
+    }
+
+    public String toCsv()
+    {
+        StringBuilder sb = new StringBuilder().append(deal).append(',').append(rotation);
+        for (int agent : seatAgents) {
+            sb.append(',').append(agent);
+        }
+        for (int score : scores) {
+            sb.append(',').append(score);
+        }
+        return sb.append(',').append(moves).append(',').append(String.format("%.1f", elapsedNanos / 1e6)).toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Deal %d, rotation %d: agents %s scored %s", deal, rotation,
+                Arrays.toString(seatAgents), Arrays.toString(scores));
+    }
+
+}
@@ -0,0 +1,87 @@
+package tournament;
+
+/**
+ * Running totals of a tournament, for each agent of the lineup.
+ *
+ * Results are added a deal at a time. With duplicate deals, every agent
+ * plays a deal's cards from every seat, so an agent's mean over a deal
+ * cancels out most of the luck of the cards. The confidence intervals
+ * treat these means as the samples, since the games of one deal are not
+ * independent of each other.
+ *
+ * Results may be added from any number of threads.
+ */
+public class Standings {
+
+    // Two-sided 95% confidence, from the normal distribution
+    private static final double Z_95 = 1.96;
+
+    private final int numAgents;
+    private long deals, games, moves;
+    private final double[] winSum, winSquares; // Sums of each agent's mean win share per deal, and of their squares
+    private final double[] pointsSum, pointsSquares;
+
+    public Standings(int numAgents)
+    {
+        this.numAgents = numAgents;
+        winSum = new double[numAgents];
+        winSquares = new double[numAgents];
+        pointsSum = new double[numAgents];
+        pointsSquares = new double[numAgents];
+    }
+
+    /**
+     * Adds the games played from one deal
+     */
+    public synchronized void addDeal(GameResult[] results)
+    {
+        ++deals;
+        games += results.length;
+        for (GameResult result : results) {
+            moves += result.getMoves();
+        }
+
+        for (int agent = 0; agent < numAgents; ++agent) {
+            double wins = 0, points = 0;
+            for (GameResult result : results) {
+                final int seat = result.seatOf(agent);
+                wins += result.winShare(seat);
+                points += result.getScore(seat);
+            }
+            wins /= results.length;
+            points /= results.length;
+
+            winSum[agent] += wins;
+            winSquares[agent] += wins * wins;
+            pointsSum[agent] += points;
+            pointsSquares[agent] += points * points;
+        }
+    }
+
+    public synchronized long getDeals() { return deals; }
+    public synchronized long getGames() { return games; }
+    public synchronized long getMoves() { return moves; }
+
+    /**
+     * @return The agent's share of the wins, where a tie splits a win evenly
+     */
+    public synchronized double winRate(int agent) { return mean(winSum[agent]); }
+    public synchronized double winRateError(int agent) { return halfWidth(winSum[agent], winSquares[agent]); }
+
+    public synchronized double meanPoints(int agent) { return mean(pointsSum[agent]); }
+    public synchronized double meanPointsError(int agent) { return halfWidth(pointsSum[agent], pointsSquares[agent]); }
+
+    private double mean(double sum) { return deals == 0 ? 0 : sum / deals; }
+
+    // Half the width of the 95% confidence interval of the mean
+    private double halfWidth(double sum, double squares)
+    {
+        if (deals < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double mean = sum / deals;
+        final double variance = Math.max(0, (squares - deals * mean * mean) / (deals - 1));
+        return Z_95 * Math.sqrt(variance / deals);
+    }
+
+}
@@ -0,0 +1,339 @@
+package tournament;
+
+import algorithms.*;
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+import model.Model;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Plays complete games between AI agents, with no view, to measure both how
+ * strong the agents are and how fast the engine runs.
+ *
+ * Every deal is played once for each rotation of the lineup around the
+ * table, so each agent plays the deal's cards from every seat. The cards of
+ * a game are determined by its deal's seed, and searches have a budget of
+ * iterations rather than time, so a tournament plays the same games on
+ * every run, however many threads it uses. Games run in parallel, one deal
+ * per thread at a time, and each search runs on its game's thread.
+ *
+ * Usage: Tournament agents [deals] [iterations] [seed] [results.csv]
+ *
+ * agents is a comma separated list of one PlayerType per seat, e.g.,
+ * "UCT_AI,DUMB_AI,DUMB_AI,CFR_AI". iterations is the budget of each UCT or
+ * ISMCTS search. Each game is written to results.csv as it finishes, or to
+ * standard output if it is "-".
+ */
+public class Tournament {
+
+    private static final int DEFAULT_DEALS = 100;
+    private static final long DEFAULT_ITERATIONS = 1000;
+
+    private final PlayerType[] lineup;
+    private SearchBudget budget;
+    private long seed;
+    private int numThreads;
+    private CFRCheckpoint checkpoint; // Shared by every CFR agent, or null if they play randomly
+
+    public Tournament(PlayerType[] lineup)
+    {
+        if (lineup.length != Hearts.NUM_PLAYERS) {
+            throw new IllegalArgumentException("A lineup needs " + Hearts.NUM_PLAYERS + " agents, not " + lineup.length);
+        }
+        for (PlayerType type : lineup) {
+            if (type == PlayerType.HUMAN) {
+                throw new IllegalArgumentException("Humans cannot play in a tournament");
+            }
+        }
+        this.lineup = lineup.clone();
+        budget = SearchBudget.ofIterations(DEFAULT_ITERATIONS);
+        numThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    public int numAgents() { return lineup.length; }
+    public PlayerType getAgent(int agent) { return lineup[agent]; }
+
+    /**
+     * Sets the budget of each search. A budget with a time limit makes the
+     * games depend on the speed of the machine.
+     */
+    public void setBudget(SearchBudget budget) { this.budget = budget; }
+    public void setSeed(long seed) { this.seed = seed; }
+    public void setNumThreads(int n) { numThreads = Math.max(1, n); }
+    public int getNumThreads() { return numThreads; }
+    public void setCheckpoint(CFRCheckpoint checkpoint) { this.checkpoint = checkpoint; }
+
+    /**
+     * Plays every rotation of the given number of deals
+     *
+     * @param listener Called with each game as it finishes, from the thread that played it
+     * @return The totals of every game
+     */
+    public Standings run(long deals, Consumer<GameResult> listener)
+    {
+        Standings standings = new Standings(lineup.length);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "tournament");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Deals are handed out one at a time, so fast threads take more of them
+        final AtomicLong nextDeal = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; ++i) {
+            futures.add(executor.submit(() -> {
+                for (long deal = nextDeal.getAndIncrement(); deal < deals; deal = nextDeal.getAndIncrement()) {
+                    GameResult[] results = new GameResult[lineup.length];
+                    for (int rotation = 0; rotation < results.length; ++rotation) {
+                        results[rotation] = playGame(deal, rotation);
+                        listener.accept(results[rotation]);
+                    }
+                    standings.addDeal(results);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return standings;
+    }
+
+    /**
+     * Plays one complete game, on the calling thread
+     *
+     * @param deal Which deal to play. Games of the same deal are dealt the same cards
+     * @param rotation Seats the lineup's agent number (seat + rotation) % numAgents() in each seat
+     */
+    public GameResult playGame(long deal, int rotation)
+    {
+        final long startNanos = System.nanoTime();
+        final long dealSeed = mix(seed + deal);
+
+        Model model = new Model(dealSeed);
+        model.setRunningAITurn(true); // Do not print each trick
+        Hearts game = new Hearts(model);
+
+        final int numSeats = lineup.length;
+        int[] seatAgents = new int[numSeats];
+        PlayerType[] seatTypes = new PlayerType[numSeats];
+        Agent[] agents = new Agent[numSeats];
+        for (int seat = 0; seat < numSeats; ++seat) {
+            seatAgents[seat] = (seat + rotation) % numSeats;
+            seatTypes[seat] = lineup[seatAgents[seat]];
+        }
+        game.setPlayerTypes(seatTypes);
+        for (int seat = 0; seat < numSeats; ++seat) {
+            // Agents are seeded by seat, so an agent's play depends only on the cards it is given
+            agents[seat] = createAgent(seatTypes[seat], game, model, mix(dealSeed ^ (seat + 1)));
+        }
+
+        int moves = 0;
+        List<long[]> dealtHands = new ArrayList<>();
+        while (!model.isGameOver()) {
+            if (model.getRoundNum() > dealtHands.size()) {
+                dealtHands.add(handMasks(model));
+            }
+            final Card card = agents[model.getActivePlayer()].chooseCard();
+            game.makeMove(card);
+            for (Agent agent : agents) {
+                agent.moveMade(card);
+            }
+            ++moves;
+        }
+
+        return new GameResult(deal, rotation, seatAgents, model.getFinalTotalScores(), model.winners(), moves,
+                System.nanoTime() - startNanos, dealtHands);
+    }
+
+    private static long[] handMasks(Model model)
+    {
+        long[] hands = new long[Hearts.NUM_PLAYERS];
+        for (int seat = 0; seat < hands.length; ++seat) {
+            hands[seat] = model.getHandMask(seat);
+        }
+        return hands;
+    }
+
+    private Agent createAgent(PlayerType type, Hearts game, Model model, long agentSeed)
+    {
+        switch (type) {
+            case DUMB_AI:
+                return () -> DumbPlayer.chooseCard(model.getHand(model.getActivePlayer()), model.getLedCard(),
+                        model.isFirstTrick(), model.isHeartsBroken());
+            case CFR_AI:
+                CFRPlayer cfrPlayer = new CFRPlayer(game, checkpoint, agentSeed);
+                return () -> cfrPlayer.chooseCard(model.getActivePlayer());
+            case UCT_AI:
+                return new UCTAgent(game, agentSeed);
+            case ISMCTS_AI:
+                return () -> {
+                    ISMCTSAlgorithm<Card> ismcts = new ISMCTSAlgorithm<>(game);
+                    ismcts.setBudget(budget);
+                    ismcts.setSeed(agentSeed + model.getTrickNumber() * Hearts.NUM_PLAYERS + model.getTrickSize());
+                    return ismcts.search();
+                };
+            default:
+                throw new IllegalArgumentException("No agent plays as " + type);
+        }
+    }
+
+    /**
+     * Keeps one search for the whole game, so each search can reuse the
+     * tree of the last. The search is created on the agent's first turn,
+     * since it searches for the player who is active when it is created.
+     */
+    private class UCTAgent implements Agent {
+        private final Hearts game;
+        private final long agentSeed;
+        private UCTAlgorithm<Card> searcher;
+
+        UCTAgent(Hearts game, long agentSeed)
+        {
+            this.game = game;
+            this.agentSeed = agentSeed;
+        }
+
+        @Override
+        public Card chooseCard()
+        {
+            if (searcher == null) {
+                searcher = new UCTAlgorithm<>(game);
+                searcher.setBudget(budget);
+                searcher.setSeed(agentSeed);
+            }
+            return searcher.uct();
+        }
+
+        @Override
+        public void moveMade(Card move)
+        {
+            if (searcher != null) {
+                searcher.advance(move);
+            }
+        }
+    }
+
+    // Spreads nearby seeds over every bit, since java.util.Random gives
+    // similar first values for similar seeds (the SplitMix64 finalizer)
+    private static long mix(long z)
+    {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 1) {
+            System.err.println("Usage: Tournament agents [deals] [iterations] [seed] [results.csv]");
+            System.exit(1);
+        }
+
+        String[] names = args[0].split(",");
+        PlayerType[] lineup = new PlayerType[names.length];
+        Tournament tournament = null;
+        try {
+            for (int i = 0; i < names.length; ++i) {
+                lineup[i] = PlayerType.valueOf(names[i].trim().toUpperCase());
+            }
+            tournament = new Tournament(lineup);
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Invalid lineup '%s': %s\n", args[0], e.getMessage());
+            System.exit(1);
+        }
+
+        final long deals = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_DEALS;
+        final long iterations = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_ITERATIONS;
+        tournament.setBudget(SearchBudget.ofIterations(iterations));
+        tournament.setSeed(args.length > 3 ? Long.parseLong(args[3]) : 0);
+
+        for (PlayerType type : lineup) {
+            if (type == PlayerType.CFR_AI) {
+                tournament.setCheckpoint(openCheckpoint(CFRPlayer.DEFAULT_FILENAME));
+                break;
+            }
+        }
+
+        PrintWriter out = null;
+        if (args.length > 4) {
+            try {
+                out = args[4].equals("-") ? new PrintWriter(System.out) : new PrintWriter(Files.newBufferedWriter(Paths.get(args[4])));
+            } catch (IOException e) {
+                System.err.printf("Failed to open '%s': %s\n", args[4], e.getMessage());
+                System.exit(1);
+            }
+            out.println(GameResult.csvHeader());
+        }
+
+        System.out.printf("Playing %d deals, %d games, on %d threads, with searches of %d iterations\n",
+                deals, deals * lineup.length, tournament.getNumThreads(), iterations);
+
+        final PrintWriter results = out;
+        final long startNanos = System.nanoTime();
+        Standings standings = tournament.run(deals, result -> {
+            if (results != null) {
+                synchronized (results) {
+                    results.println(result.toCsv());
+                }
+            }
+        });
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        if (results != null) {
+            results.flush();
+            if (results.checkError()) {
+                System.err.printf("Failed to write the results to '%s'\n", args[4]);
+            }
+        }
+
+        for (int agent = 0; agent < lineup.length; ++agent) {
+            System.out.printf("Agent %d (%s): won %.1f%% +/- %.1f%%, %.2f +/- %.2f points per game\n", agent+1,
+                    lineup[agent], 100 * standings.winRate(agent), 100 * standings.winRateError(agent),
+                    standings.meanPoints(agent), standings.meanPointsError(agent));
+        }
+        System.out.printf("%d games in %.1f s: %.1f games/s, %.0f moves/s\n", standings.getGames(), seconds,
+                standings.getGames() / seconds, standings.getMoves() / seconds);
+    }
+
+    private static CFRCheckpoint openCheckpoint(String filename)
+    {
+        try {
+            CFRCheckpoint checkpoint = CFRCheckpoint.open(Paths.get(filename));
+            checkpoint.preload();
+            return checkpoint;
+        } catch (NoSuchFileException e) {
+            System.err.printf("Failed to load CFR training data because '%s' does not exist. CFR agents will play randomly.\n",
+                    filename);
+            return null;
+        } catch (IOException e) {
+            System.err.printf("Failed to load CFR training data from '%s': %s. CFR agents will play randomly.\n",
+                    filename, e.getMessage());
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package training;
+
+import algorithms.CounterfactualRegretMinimizer;
+import algorithms.TrainingStats;
+import game.Hearts;
+import game.PlayerType;
+import model.Card;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures how much CFR training allocates, and how much time it spends in
+ * garbage collection. Training runs on the calling thread, so its
+ * allocations can be measured.
+ *
+ * Usage: CFRGCBenchmark [sampling] [iterations], defaulting to external and 1000
+ */
+public class CFRGCBenchmark {
+
+    public static void main(String[] args)
+    {
+        final CounterfactualRegretMinimizer.Sampling sampling = args.length > 0
+                ? CounterfactualRegretMinimizer.Sampling.valueOf(args[0].toUpperCase())
+                : CounterfactualRegretMinimizer.Sampling.EXTERNAL;
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        final int maxTrainDepth = 2000;
+
+        Hearts game = new Hearts();
+        game.setAllPlayerTypes(PlayerType.CFR_AI);
+        game.setTraining(true);
+
+        CounterfactualRegretMinimizer<Card> trainer = new CounterfactualRegretMinimizer<>(game, maxTrainDepth);
+        trainer.setSampling(sampling);
+
+        // Warm up, so most info sets already exist and the JIT has compiled the training loop
+        trainer.trainBatch(iterations / 2);
+
+        final long gcCountBefore = gcCount(), gcTimeBefore = gcTimeMs();
+        final long allocatedBefore = allocatedBytes();
+
+        TrainingStats stats = trainer.trainBatch(iterations);
+
+        final long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("Sampling %s: %s\n", sampling, stats);
+        System.out.printf("%d collections, %d ms in GC (%.1f%% of training)\n", gcCount() - gcCountBefore,
+                gcTimeMs() - gcTimeBefore, 100.0 * (gcTimeMs() - gcTimeBefore) / (stats.getElapsedNanos() / 1e6));
+        if (allocated >= 0) {
+            System.out.printf("%.1f MB allocated, %.1f bytes per info set touched\n", allocated / 1e6,
+                    (double) allocated / stats.getInfoSetsTouched());
+        }
+    }
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long gcTimeMs()
+    {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return time;
+    }
+
+    // Bytes allocated by this thread, or -1 if the JVM cannot measure it
+    private static long allocatedBytes()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,31 @@
+package training;
+
+import algorithms.CounterfactualRegretMinimizer;
+import game.Hearts;
+import model.Card;
+
+/**
+ * Converts training data saved in the old text format to a binary checkpoint.
+ *
+ * Usage: ConvertCFRTraining [input] [output], defaulting to cfrtraining.txt and cfrtraining.bin
+ */
+public class ConvertCFRTraining {
+
+    public static void main(String[] args)
+    {
+        final String input = args.length > 0 ? args[0] : "cfrtraining.txt";
+        final String output = args.length > 1 ? args[1] : "cfrtraining.bin";
+
+        CounterfactualRegretMinimizer<Card> minimizer = new CounterfactualRegretMinimizer<>(Hearts.NUM_PLAYERS);
+
+        boolean loaded = minimizer.load(input);
+        if (!loaded) {
+            System.err.println("Failed to load");
+            System.exit(1);
+        }
+
+        minimizer.save(output);
+        System.out.printf("Converted '%s' to '%s'\n", input, output);
+    }
+
+}
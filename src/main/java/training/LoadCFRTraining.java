@@ -10,7 +10,7 @@ public class LoadCFRTraining {
     {
         CounterfactualRegretMinimizer<Card> minimizer = new CounterfactualRegretMinimizer<>(Hearts.NUM_PLAYERS);
 
-        boolean loaded = minimizer.load("cfrtraining.txt");
+        boolean loaded = minimizer.load("cfrtraining.bin");
         if (loaded) {
             System.out.println("Loaded succesfully");
         } else {
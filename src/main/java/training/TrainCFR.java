@@ -1,10 +1,15 @@
 package training;
 
+import algorithms.CFRPlayer;
 import algorithms.CounterfactualRegretMinimizer;
+import algorithms.UpdateRule;
 import game.Hearts;
 import game.PlayerType;
 import model.Card;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 public class TrainCFR {
 
     public static void main(String[] args)
@@ -15,10 +20,24 @@ public class TrainCFR {
 
         final int maxTrainDepth = 100;
 
+        // The training mode and update rule may be given as arguments, e.g., "external dcfr"
+        final CounterfactualRegretMinimizer.Sampling sampling = args.length > 0
+                ? CounterfactualRegretMinimizer.Sampling.valueOf(args[0].toUpperCase())
+                : CounterfactualRegretMinimizer.Sampling.FULL;
+        final UpdateRule updateRule = args.length > 1 ? UpdateRule.fromString(args[1]) : UpdateRule.VANILLA;
+
         //CounterfactualRegretMinimizer<HeartsMove> trainer = new CounterfactualRegretMinimizer<>(game);
         CounterfactualRegretMinimizer<Card> trainer = new CounterfactualRegretMinimizer<>(game, maxTrainDepth);
-        //trainer.solve("cfrtraining.txt", 1000, 1000, 10000);
-        trainer.solve("cfrtraining.txt", 1, 1, 1);
+        trainer.setNumThreads(Runtime.getRuntime().availableProcessors());
+        trainer.setSampling(sampling);
+
+        // Resume from the last checkpoint, if there is one
+        if (Files.exists(Paths.get(CFRPlayer.DEFAULT_FILENAME)) && !trainer.load(CFRPlayer.DEFAULT_FILENAME)) {
+            System.exit(1);
+        }
+
+        //trainer.solve(CFRPlayer.DEFAULT_FILENAME, 1000, 1000, 10000, updateRule);
+        trainer.solve(CFRPlayer.DEFAULT_FILENAME, 1, 1, 1, updateRule);
     }
 
 }
@@ -17,14 +17,7 @@ public class CardLabel extends Label {
 
     private int playerID;
 
-    // Index into this like images[suit][value]
-    // Initial nulls is because lowest value is 2 (skip 0 and 1)
-    private static final String[][] images = {
-            {null, null, "2C.png", "3C.png", "4C.png", "5C.png", "6C.png", "7C.png", "8C.png", "9C.png", "10C.png", "JC.png", "QC.png", "KC.png", "AC.png"},
-            {null, null, "2D.png", "3D.png", "4D.png", "5D.png", "6D.png", "7D.png", "8D.png", "9D.png", "10D.png", "JD.png", "QD.png", "KD.png", "AD.png"},
-            {null, null, "2H.png", "3H.png", "4H.png", "5H.png", "6H.png", "7H.png", "8H.png", "9H.png", "10H.png", "JH.png", "QH.png", "KH.png", "AH.png"},
-            {null, null, "2S.png", "3S.png", "4S.png", "5S.png", "6S.png", "7S.png", "8S.png", "9S.png", "10S.png", "JS.png", "QS.png", "KS.png", "AS.png"},
-    };
+    private final ImageView view; // Shows the card's shared image (see Images)
 
     private int index; // 0-based index of card in player's hand
 
@@ -32,6 +25,7 @@ public class CardLabel extends Label {
     {
         playerID = pID;
         index = ind;
+        view = new ImageView(Images.BACK);
 
         setMinSize(WIDTH, HEIGHT);
         setMaxSize(WIDTH, HEIGHT);
@@ -54,7 +48,8 @@ public class CardLabel extends Label {
             return;
         }
 
-        setGraphic(new ImageView(Images.readImage(images[suit][value])));
+        view.setImage(Images.face(Card.of(suit, value)));
+        setGraphic(view);
     }
 
     public static void setImage(Label lbl, Card card)
@@ -63,7 +58,13 @@ public class CardLabel extends Label {
             lbl.setGraphic(null);
             return;
         }
-        lbl.setGraphic(new ImageView(Images.readImage(images[card.getSuit()][card.getValue()])));
+
+        // Reuse the label's view, if it has one
+        if (lbl.getGraphic() instanceof ImageView) {
+            ((ImageView) lbl.getGraphic()).setImage(Images.face(card));
+        } else {
+            lbl.setGraphic(new ImageView(Images.face(card)));
+        }
     }
 
     private void setBorderColor(Color c)
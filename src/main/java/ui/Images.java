@@ -1,23 +1,45 @@
 package ui;
 
 import javafx.scene.image.Image;
+import model.Card;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 
+/**
+ * Card images, decoded once when the class is loaded. An Image can be shown
+ * by any number of ImageViews, so every view of a card shares one, and
+ * changing the cards on the table never reads or decodes a file.
+ */
 public class Images {
 
     private static final String RESOURCES_PATH = String.format("resources%simg%s", File.separator, File.separator);
 
-    public static Image BACK = readImage("back.png");
+    public static final Image BACK = readImage("back.png");
+
+    private static final Image[] FACES = new Image[Card.NUM_CARDS]; // Indexed by Card.ordinal()
+
+    static {
+        for (int i = 0; i < FACES.length; ++i) {
+            FACES[i] = readImage(Card.of(i) + ".png");
+        }
+    }
+
+    // Prevent creating instances of this class
+    private Images() {}
+
+    /**
+     * @return The face of the given card
+     */
+    public static Image face(Card card) { return FACES[card.ordinal()]; }
 
     public static Image readImage(String filename)
     {
-        try {
-            FileInputStream stream = new FileInputStream(String.format("%s%s", RESOURCES_PATH, filename));
+        try (InputStream stream = new FileInputStream(String.format("%s%s", RESOURCES_PATH, filename))) {
             return new Image(stream);
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
             return null;
@@ -15,6 +15,7 @@ public class SetupDialog extends Dialog<ButtonType> {
     private static final String aiDumbPlayerStr = "AI dumb player";
     private static final String aiCFRPlayerStr = "AI CFR player";
     private static final String aiUCTPlayerStr = "AI UCT player";
+    private static final String aiISMCTSPlayerStr = "AI ISMCTS player";
 
     private ChoiceBox<String> p2ChoiceBox, p3ChoiceBox, p4ChoiceBox;
 
@@ -22,7 +23,7 @@ public class SetupDialog extends Dialog<ButtonType> {
     {
         setTitle("Hearts Game Setup");
 
-        final String[] choices = {humanPlayerStr, aiDumbPlayerStr, aiCFRPlayerStr, aiUCTPlayerStr};
+        final String[] choices = {humanPlayerStr, aiDumbPlayerStr, aiCFRPlayerStr, aiUCTPlayerStr, aiISMCTSPlayerStr};
         p2ChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(choices));
         p3ChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(choices));
         p4ChoiceBox = new ChoiceBox<>(FXCollections.observableArrayList(choices));
@@ -79,6 +80,8 @@ public class SetupDialog extends Dialog<ButtonType> {
                 return PlayerType.CFR_AI;
             case aiUCTPlayerStr:
                 return PlayerType.UCT_AI;
+            case aiISMCTSPlayerStr:
+                return PlayerType.ISMCTS_AI;
             default:
                 System.err.printf("Invalid choice %s.\n", choice);
                 System.exit(1);
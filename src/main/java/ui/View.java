@@ -3,6 +3,7 @@ package ui;
 import game.Hearts;
 import game.PlayerType;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -25,6 +26,7 @@ public class View extends Application {
     private CardLabel[] p1Cards, p2Cards, p3Cards, p4Cards;
     private Label[] centerCards;
     private Label turnLabel;
+    private ProgressIndicator thinkingIndicator; // Spins while an AI player is thinking
 
     private PlayerType[] playerTypes;
 
@@ -57,9 +59,19 @@ public class View extends Application {
 
     public void setModel(Model m) { model = m; }
 
+    /**
+     * Runs the given code on the JavaFX application thread, e.g., to show
+     * the result of work done on another thread
+     */
+    public void runLater(Runnable r) { Platform.runLater(r); }
+
     public void update()
     {
-        if (model.isTrickOver()) {
+        thinkingIndicator.setVisible(game.isThinking());
+
+        if (game.isThinking()) {
+            turnLabel.setText(String.format("Player %d is thinking...", model.getActivePlayer() + 1));
+        } else if (model.isTrickOver()) {
             turnLabel.setText("Click to finish trick");
         } else {
             turnLabel.setText(String.format("Player %d's turn", model.getActivePlayer() + 1));
@@ -133,6 +145,12 @@ public class View extends Application {
 
     private MenuBar genMenu()
     {
+        MenuItem newGameItem = new MenuItem("New game");
+        newGameItem.setOnAction(e -> game.newGame());
+
+        final Menu gameMenu = new Menu("Game");
+        gameMenu.getItems().add(newGameItem);
+
         MenuItem item = new MenuItem("Show scores for previous rounds");
         item.setOnAction(e -> showScoreDialog());
 
@@ -140,7 +158,7 @@ public class View extends Application {
         menu.getItems().add(item);
 
         MenuBar menuBar = new MenuBar();
-        menuBar.getMenus().add(menu);
+        menuBar.getMenus().addAll(gameMenu, menu);
 
         return menuBar;
     }
@@ -159,6 +177,10 @@ public class View extends Application {
 
         turnLabel = new Label();
 
+        thinkingIndicator = new ProgressIndicator();
+        thinkingIndicator.setMaxSize(32, 32);
+        thinkingIndicator.setVisible(false);
+
         StackPane centerPane = new StackPane();
         centerPane.setOnMouseClicked(e -> game.handleCenterClicked());
 
@@ -167,9 +189,10 @@ public class View extends Application {
         centerPane.setMaxSize(width, height);
         centerPane.setPrefSize(width, height);
 
-        centerPane.getChildren().addAll(playedCardsPane, turnLabel);
+        centerPane.getChildren().addAll(playedCardsPane, turnLabel, thinkingIndicator);
         playedCardsPane.setAlignment(Pos.CENTER); // StackPane.setAlignment() didn't work, but this does
         StackPane.setAlignment(turnLabel, Pos.BOTTOM_CENTER);
+        StackPane.setAlignment(thinkingIndicator, Pos.TOP_CENTER);
 
         rootPane.setCenter(centerPane);
     }